@@ -0,0 +1,114 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of a data log by the report readers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DataLogParsingBenchmark {
+
+	// number of samples of the data log
+	@Param({ "100000", "1000000" })
+	private int lines;
+
+	// number of threads of the concurrent readers
+	@Param({ "1", "4" })
+	private int threads;
+
+	private File directory;
+
+	private List<File> dataLogs;
+
+	private List<File> caches;
+
+	@Setup
+	public void createDataLog() throws IOException {
+		directory = SyntheticData.createTempDirectory("grinder-benchmark");
+		final File dataLog = new File(directory, "host-0-data.log");
+		SyntheticData.writeDataLog(dataLog, lines, 20, 42);
+		dataLogs = Collections.singletonList(dataLog);
+
+		final File cache = ColumnarCache.getCacheFile(directory, dataLog);
+		ColumnarCache.convert(dataLog, cache);
+		caches = Collections.singletonList(cache);
+	}
+
+	@TearDown
+	public void deleteDataLog() {
+		FileUtil.delete(directory);
+	}
+
+	@Benchmark
+	public long parse() throws IOException {
+		final DataLogReader reader = new DataLogReader(new FileInputStream(dataLogs.get(0)));
+		try {
+			final Sample sample = new Sample();
+			long total = 0;
+			while (reader.next(sample)) {
+				total += sample.getTestTime();
+			}
+			return total;
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Benchmark
+	public RunStatistics merge() throws IOException {
+		final ReportAggregator aggregator = new ReportAggregator(1);
+		new DataLogMerger(dataLogs).merge(aggregator);
+		return aggregator.getStatistics();
+	}
+
+	@Benchmark
+	public RunStatistics chunked() throws IOException {
+		final ReportAggregator aggregator = new ReportAggregator(1);
+		new ChunkedDataLogReader(dataLogs, threads, ChunkedDataLogReader.DEFAULT_CHUNK_SIZE / 16).read(aggregator);
+		return aggregator.getStatistics();
+	}
+
+	@Benchmark
+	public RunStatistics columnarCache() throws IOException {
+		final ReportAggregator aggregator = new ReportAggregator(1);
+		new ColumnarCache(caches, threads).read(aggregator);
+		return aggregator.getStatistics();
+	}
+}
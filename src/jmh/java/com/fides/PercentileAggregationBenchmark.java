@@ -0,0 +1,118 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Aggregation of test times into percentiles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PercentileAggregationBenchmark {
+
+	// number of test times aggregated
+	@Param({ "1000000" })
+	private int samples;
+
+	// memory budget of the exact statistics, smaller budgets spill more runs
+	@Param({ "1m", "64m" })
+	private String memoryBudget;
+
+	private long[] testTimes;
+
+	private File spillDirectory;
+
+	@Setup
+	public void createTestTimes() throws IOException {
+		final Random random = new Random(42);
+		testTimes = new long[samples];
+		for (int i = 0; i < samples; i++) {
+			testTimes[i] = (long) Math.exp(3 + random.nextGaussian() * 0.8);
+		}
+		spillDirectory = SyntheticData.createTempDirectory("grinder-benchmark");
+	}
+
+	@TearDown
+	public void deleteSpillDirectory() {
+		FileUtil.delete(spillDirectory);
+	}
+
+	@Benchmark
+	public long histogram() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (final long testTime : testTimes) {
+			histogram.recordValue(testTime);
+		}
+		return histogram.getValueAtPercentile(99);
+	}
+
+	@Benchmark
+	public long correctedHistogram() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (final long testTime : testTimes) {
+			histogram.recordValueWithExpectedInterval(testTime, 50);
+		}
+		return histogram.getValueAtPercentile(99);
+	}
+
+	@Benchmark
+	public long runStatistics() {
+		final RunStatistics statistics = new RunStatistics();
+		final Sample sample = new Sample();
+		for (int i = 0; i < testTimes.length; i++) {
+			sample.setTest(i % 20);
+			sample.setStartTime(i);
+			sample.setTestTime(testTimes[i]);
+			statistics.sample(sample);
+		}
+		return statistics.getTotal().getPercentileTime(99);
+	}
+
+	@Benchmark
+	public long[] exactStatistics() throws IOException {
+		final ExactStatistics statistics = new ExactStatistics(spillDirectory,
+				ExactStatistics.parseSize(memoryBudget), 1, 10);
+		final Sample sample = new Sample();
+		for (int i = 0; i < testTimes.length; i++) {
+			sample.setTest(i % 20);
+			sample.setStartTime(i);
+			sample.setTestTime(testTimes[i]);
+			statistics.sample(sample);
+		}
+		statistics.finish();
+		return statistics.getTotal();
+	}
+}
@@ -0,0 +1,93 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.shared.filtering.MultiDelimiterInterpolatorFilterReaderLineEnding;
+import org.codehaus.plexus.interpolation.PropertiesBasedValueSource;
+import org.codehaus.plexus.interpolation.RegexBasedInterpolator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Filtering and loading of a grinder properties file.
+ *
+ * GrinderPropertiesConfigure.filterGrinderPropertiesFile needs the Maven session and the
+ * filtering component injected by Maven, so this benchmark runs the filter reader that
+ * maven-filtering wraps around every resource, followed by the loading of the filtered properties.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PropertiesFilteringBenchmark {
+
+	// number of properties of the file
+	@Param({ "10", "1000" })
+	private int properties;
+
+	private File directory;
+
+	private File propertiesFile;
+
+	private Properties values;
+
+	@Setup
+	public void createPropertiesFile() throws IOException {
+		directory = SyntheticData.createTempDirectory("grinder-benchmark");
+		propertiesFile = new File(directory, "grinder.properties");
+		values = SyntheticData.writeProperties(propertiesFile, properties);
+	}
+
+	@TearDown
+	public void deletePropertiesFile() {
+		FileUtil.delete(directory);
+	}
+
+	@Benchmark
+	public Properties filter() throws IOException {
+		final RegexBasedInterpolator interpolator = new RegexBasedInterpolator();
+		interpolator.addValueSource(new PropertiesBasedValueSource(values));
+
+		final Reader reader = new MultiDelimiterInterpolatorFilterReaderLineEnding(
+				new InputStreamReader(new FileInputStream(propertiesFile), "UTF-8"), interpolator, true);
+		final Properties filtered = new Properties();
+		try {
+			filtered.load(reader);
+		} finally {
+			reader.close();
+		}
+		return filtered;
+	}
+}
@@ -0,0 +1,141 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Properties;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Generators of synthetic data logs, jars and properties files of configurable size for the benchmarks.
+ */
+final class SyntheticData {
+
+	// header of the generated data logs, as written by Grinder 3.11 with HTTP statistics
+	private static final String DATA_LOG_HEADER = "Thread, Run, Test, Start time (ms since Epoch), Test time, "
+			+ "Errors, HTTP response code, HTTP response length, HTTP response errors, Time to resolve host, "
+			+ "Time to establish connection, Time to first byte, New connections";
+
+	private SyntheticData() {
+	}
+
+	/**
+	 * Write a data log of worker threads running tests with log-normal test times and 1% errors.
+	 *
+	 * @param file the data log
+	 * @param lines the number of samples
+	 * @param tests the number of distinct tests
+	 * @param seed the random seed
+	 */
+	static void writeDataLog(final File file, final int lines, final int tests, final long seed) throws IOException {
+		final Random random = new Random(seed);
+		final PrintWriter out = new PrintWriter(new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1"), 256 * 1024));
+		try {
+			out.println(DATA_LOG_HEADER);
+			long time = 1350000000000L;
+			for (int i = 0; i < lines; i++) {
+				final int test = 1 + random.nextInt(tests);
+				final long testTime = (long) Math.exp(3 + random.nextGaussian() * 0.8);
+				final boolean error = random.nextInt(100) == 0;
+				time += random.nextInt(3);
+				out.print(i % 50);
+				out.print(", ");
+				out.print(i / 50);
+				out.print(", ");
+				out.print(test);
+				out.print(", ");
+				out.print(time);
+				out.print(", ");
+				out.print(testTime);
+				out.print(error ? ", 1, 500, 0, 1" : ", 0, 200, 5120, 0");
+				out.println(", 0, 1, " + testTime / 2 + ", 0");
+			}
+		} finally {
+			out.close();
+		}
+		if (out.checkError()) {
+			throw new IOException("Unable to write " + file.getPath());
+		}
+	}
+
+	/**
+	 * Write a jar of random entries spread over directories.
+	 *
+	 * @param file the jar
+	 * @param entries the number of entries
+	 * @param entrySize the size of every entry in bytes
+	 * @param seed the random seed
+	 */
+	static void writeJar(final File file, final int entries, final int entrySize, final long seed) throws IOException {
+		final Random random = new Random(seed);
+		final byte[] content = new byte[entrySize];
+		final JarOutputStream out = new JarOutputStream(new FileOutputStream(file));
+		try {
+			for (int i = 0; i < entries; i++) {
+				random.nextBytes(content);
+				out.putNextEntry(new JarEntry("Lib/package" + (i % 20) + "/module" + i + ".py"));
+				out.write(content);
+				out.closeEntry();
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write a grinder properties file whose values all hold place-holders.
+	 *
+	 * @param file the properties file
+	 * @param count the number of properties
+	 *
+	 * @return the values of the place-holders
+	 */
+	static Properties writeProperties(final File file, final int count) throws IOException {
+		final Properties values = new Properties();
+		final PrintWriter out = new PrintWriter(new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1")));
+		try {
+			out.println("grinder.script=${test.script}");
+			values.setProperty("test.script", "test.py");
+			for (int i = 0; i < count; i++) {
+				out.println("grinder.test" + i + ".url=http://${test.host}:${test.port" + i + "}/path/" + i);
+				values.setProperty("test.port" + i, Integer.toString(8000 + i));
+			}
+			values.setProperty("test.host", "localhost");
+		} finally {
+			out.close();
+		}
+		return values;
+	}
+
+	/**
+	 * @return a new empty temporary directory
+	 */
+	static File createTempDirectory(final String prefix) throws IOException {
+		final File directory = File.createTempFile(prefix, "");
+		if (!directory.delete() || !directory.mkdirs()) {
+			throw new IOException("Unable to create " + directory.getPath());
+		}
+		return directory;
+	}
+}
@@ -0,0 +1,93 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Extraction of a jar such as the Grinder Analyzer, into an empty directory and over a previous extraction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+public class UnJarBenchmark {
+
+	// number of entries of the jar
+	@Param({ "100", "1000" })
+	private int entries;
+
+	// size of every entry in bytes
+	@Param({ "4096", "65536" })
+	private int entrySize;
+
+	private File directory;
+
+	private File jar;
+
+	private File extracted;
+
+	private File previous;
+
+	@Setup
+	public void createJar() throws IOException {
+		directory = SyntheticData.createTempDirectory("grinder-benchmark");
+		jar = new File(directory, "analyzer.jar");
+		SyntheticData.writeJar(jar, entries, entrySize, 42);
+		previous = new File(directory, "previous");
+		FileUtil.unJarDirectory(jar.getPath(), previous);
+	}
+
+	@Setup(Level.Invocation)
+	public void deleteExtraction() {
+		extracted = new File(directory, "extracted");
+		FileUtil.delete(extracted);
+	}
+
+	@TearDown
+	public void deleteJar() {
+		FileUtil.delete(directory);
+	}
+
+	@Benchmark
+	public File extract() throws IOException {
+		FileUtil.unJarDirectory(jar.getPath(), extracted);
+		return extracted;
+	}
+
+	@Benchmark
+	public File extractUnchanged() throws IOException {
+		FileUtil.unJarDirectory(jar.getPath(), previous);
+		return previous;
+	}
+}
@@ -14,10 +14,20 @@
 
 package com.fides;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Properties;
+
 import net.grinder.common.GrinderException;
 import net.grinder.engine.agent.AgentDaemon;
 import net.grinder.engine.agent.AgentImplementation;
 
+import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.slf4j.Logger;
@@ -35,6 +45,15 @@ public class Agent extends GrinderPropertiesConfigure {
 	// Agent logger
 	private final Logger logger = LoggerFactory.getLogger("agent");
 
+	/**
+	 * Number of agents started by the goal. Several agents run in their own JVM, each one with
+	 * its own host ID and log subdirectory of the run directory, and the goal fails if any of
+	 * them exits with an error.
+	 *
+	 * @parameter expression="${grinder.agents}" default-value="1"
+	 */
+	private int agents;
+
 	/**
 	 * Constructor
 	 */
@@ -43,7 +62,12 @@ public class Agent extends GrinderPropertiesConfigure {
 	}
 
 	@Override
-	public void execute()
+	protected boolean isNewRun() {
+		return true;
+	}
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException
 	{
 		try {
 			super.execute();
@@ -53,6 +77,11 @@ public class Agent extends GrinderPropertiesConfigure {
 			logger.error("Failed to execute Grinder Maven goal.", e1);
 		}
 
+		if (agents > 1) {
+			startAgents();
+			return;
+		}
+
 		AgentDaemon daemon_agent;
 		AgentImplementation default_agent;
 		try {
@@ -87,4 +116,106 @@ public class Agent extends GrinderPropertiesConfigure {
 			logger.error("Failed to execute Grinder Maven goal.", e);
 		}
 	}
+
+	@Override
+	protected String getAgentClassPath() {
+		return agents > 1 ? getPluginClassPath() : super.getAgentClassPath();
+	}
+
+	/**
+	 * @return the classpath of an agent JVM, the plug-in dependencies holding Grinder; the workers
+	 * 	get the worker classpath from the grinder.jvm.classpath property of the agent
+	 */
+	private String getPluginClassPath() {
+		final StringBuilder classPath = new StringBuilder();
+		for (final Artifact a : getPluginArtifacts()) {
+			if (a.getFile() != null) {
+				if (classPath.length() > 0) {
+					classPath.append(File.pathSeparator);
+				}
+				classPath.append(MavenUtilities.normalizePath(a.getFile().getPath()));
+			}
+		}
+		return classPath.toString();
+	}
+
+	@Override
+	protected boolean runTrainingAgent(final File properties) {
+		if (agents <= 1) {
+			return super.runTrainingAgent(properties);
+		}
+
+		final AgentProcesses processes = new AgentProcesses(logger);
+		try {
+			processes.start(ClassDataSharing.TRAINING_DIRECTORY, AgentProcesses.getCommand(
+					getPluginClassPath(), properties, 0));
+			return processes.waitFor().isEmpty();
+		} catch (final IOException e) {
+			logger.warn("Unable to start the class data sharing training agent.", e);
+			return false;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Start the agents in their own JVM and wait for them to exit.
+	 */
+	private void startAgents() throws MojoExecutionException, MojoFailureException {
+		final String hostID = getHostID();
+		final AgentProcesses processes = new AgentProcesses(logger);
+		try {
+			for (int i = 0; i < agents; i++) {
+				final String name = RunHistory.AGENT_DIRECTORY_PREFIX + i;
+				final File logDirectory = new File(getRunLogDirectory(), name);
+				logDirectory.mkdirs();
+
+				final Properties properties = new Properties();
+				properties.putAll(getPropertiesPlugin());
+				properties.setProperty("grinder.hostID", hostID + "-" + name);
+				properties.setProperty("grinder.logDirectory", MavenUtilities.normalizePath(logDirectory.getPath()));
+
+				final File file = new File(getCONFIG(), "grinder_" + name + ".properties");
+				final OutputStream out = new FileOutputStream(file);
+				try {
+					properties.store(out, "Grinder Agent Properties");
+				} finally {
+					out.close();
+				}
+
+				processes.start(name, AgentProcesses.getCommand(
+						getPluginClassPath(),
+						file,
+						isDaemonOption() ? getDaemonPeriod() : 0));
+			}
+			logger.info("Started " + agents + " agents logging to " + getRunLogDirectory().getPath());
+
+			final List<String> failed = processes.waitFor();
+			if (!failed.isEmpty()) {
+				throw new MojoFailureException(failed.size() + " of " + agents + " agents failed: " + failed);
+			}
+		} catch (final IOException e) {
+			processes.destroy();
+			throw new MojoExecutionException("Unable to start the Grinder agents.", e);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while waiting for the Grinder agents.", e);
+		}
+	}
+
+	/**
+	 * @return the configured host ID, or else the name of the local host
+	 */
+	private String getHostID() {
+		final String hostID = getPropertiesPlugin().getProperty("grinder.hostID");
+		if (hostID != null) {
+			return hostID;
+		}
+		try {
+			return InetAddress.getLocalHost().getHostName();
+		} catch (final UnknownHostException e) {
+			return "localhost";
+		}
+	}
 }
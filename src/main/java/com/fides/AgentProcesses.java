@@ -0,0 +1,168 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+
+/**
+ * Grinder agents running in their own JVM, started and supervised by the agent goal.
+ *
+ * The output of every agent is copied to the log, prefixed by the agent name. The agents
+ * still running when the Maven JVM exits are destroyed.
+ */
+public class AgentProcesses {
+
+	// main class of the Grinder agent
+	public static final String GRINDER_MAIN_CLASS = "net.grinder.Grinder";
+
+	private final Logger logger;
+
+	private final List<String> names = new ArrayList<String>();
+
+	private final List<Process> processes = new ArrayList<Process>();
+
+	private final List<Thread> pumps = new ArrayList<Thread>();
+
+	// destroys the agents if Maven is interrupted
+	private final Thread shutdownHook = new Thread() {
+		@Override
+		public void run() {
+			AgentProcesses.this.destroy();
+		}
+	};
+
+	/**
+	 * @param logger the log receiving the output of the agents
+	 */
+	public AgentProcesses(final Logger logger) {
+		this.logger = logger;
+	}
+
+	/**
+	 * @param classpath the classpath of the Grinder agent
+	 * @param properties the Grinder properties file of the agent
+	 * @param daemonPeriod the time in milliseconds between attempts of the agent to reconnect
+	 * 	to the console, 0 to run the agent once
+	 *
+	 * @return the command starting the agent with the JVM running Maven
+	 */
+	public static List<String> getCommand(final String classpath, final File properties, final long daemonPeriod) {
+		final List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.add("-cp");
+		command.add(classpath);
+		command.add(GRINDER_MAIN_CLASS);
+		if (daemonPeriod > 0) {
+			command.add("-daemon");
+			command.add(String.valueOf(Math.max(1, daemonPeriod / 1000)));
+		}
+		command.add(properties.getPath());
+		return command;
+	}
+
+	/**
+	 * Start an agent.
+	 *
+	 * @param name the name of the agent in the log
+	 * @param command the command starting the agent
+	 *
+	 * @throws IOException if the agent cannot be started
+	 */
+	public synchronized void start(final String name, final List<String> command) throws IOException {
+		if (processes.isEmpty()) {
+			Runtime.getRuntime().addShutdownHook(shutdownHook);
+		}
+
+		if(logger.isDebugEnabled()) {
+			logger.debug("Starting " + name + ": " + command);
+		}
+
+		final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		process.getOutputStream().close();
+		names.add(name);
+		processes.add(process);
+
+		final Thread pump = new Thread(name + " output") {
+			@Override
+			public void run() {
+				try {
+					final BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+					try {
+						String line;
+						while ((line = in.readLine()) != null) {
+							logger.info(name + ": " + line);
+						}
+					} finally {
+						in.close();
+					}
+				} catch (final IOException e) {
+					logger.warn("Unable to read the output of " + name + ".", e);
+				}
+			}
+		};
+		pump.setDaemon(true);
+		pump.start();
+		pumps.add(pump);
+	}
+
+	/**
+	 * Wait for all the agents to exit.
+	 *
+	 * @return the names of the agents which exited with a non zero status
+	 *
+	 * @throws InterruptedException if interrupted while waiting, the agents are then destroyed
+	 */
+	public List<String> waitFor() throws InterruptedException {
+		final List<String> failed = new ArrayList<String>();
+		try {
+			for (int i = 0; i < processes.size(); i++) {
+				final int status = processes.get(i).waitFor();
+				pumps.get(i).join();
+				if (status != 0) {
+					logger.error(names.get(i) + " exited with status " + status);
+					failed.add(names.get(i));
+				} else if(logger.isDebugEnabled()) {
+					logger.debug(names.get(i) + " exited");
+				}
+			}
+		} catch (final InterruptedException e) {
+			destroy();
+			throw e;
+		}
+
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (final IllegalStateException e) {
+			// already shutting down
+		}
+		return failed;
+	}
+
+	/**
+	 * Destroy the agents still running.
+	 */
+	public synchronized void destroy() {
+		for (final Process process : processes) {
+			process.destroy();
+		}
+	}
+}
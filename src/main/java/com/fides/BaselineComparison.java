@@ -0,0 +1,352 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+
+package com.fides;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compare the statistics of a run with those of a baseline run and list the
+ * regressions beyond the configured thresholds.
+ *
+ * A slower mean test time is only a regression when the configured statistical
+ * test finds it significant: Welch's t-test, a large-sample z-test, or none to
+ * compare against the threshold alone. A higher error rate is tested with a
+ * two-proportion z-test, unless none is configured. Percentiles and TPS are
+ * compared against their thresholds alone.
+ */
+public class BaselineComparison {
+
+	// Threshold names, as configured in the pom.xml file of Maven project
+	public static final String MEAN_INCREASE = "meanIncrease";
+	public static final String P95_INCREASE = "p95Increase";
+	public static final String P99_INCREASE = "p99Increase";
+	public static final String TPS_DECREASE = "tpsDecrease";
+	public static final String ERROR_RATE_INCREASE = "errorRateIncrease";
+	public static final String SIGNIFICANCE = "significance";
+
+	// Statistical test names
+	public static final String WELCH_TEST = "welch";
+	public static final String Z_TEST = "z";
+	public static final String NO_TEST = "none";
+
+	// default maximum increase of the mean test time, in percent
+	private static final double DEFAULT_MEAN_INCREASE = 10;
+
+	// default maximum increase of the 95th percentile test time, in percent
+	private static final double DEFAULT_P95_INCREASE = 15;
+
+	// default maximum increase of the 99th percentile test time, in percent
+	private static final double DEFAULT_P99_INCREASE = 20;
+
+	// default maximum decrease of the TPS, in percent
+	private static final double DEFAULT_TPS_DECREASE = 10;
+
+	// default maximum increase of the error rate, in percentage points
+	private static final double DEFAULT_ERROR_RATE_INCREASE = 1;
+
+	// default significance level of the statistical tests
+	private static final double DEFAULT_SIGNIFICANCE = 0.05;
+
+	private final double meanIncrease;
+
+	private final double p95Increase;
+
+	private final double p99Increase;
+
+	private final double tpsDecrease;
+
+	private final double errorRateIncrease;
+
+	private final double significance;
+
+	private final String test;
+
+	/**
+	 * @param thresholds the thresholds by name, may be null; missing thresholds take their default value
+	 */
+	public BaselineComparison(final Map<String, String> thresholds) {
+		this(thresholds, WELCH_TEST);
+	}
+
+	/**
+	 * @param thresholds the thresholds by name, may be null; missing thresholds take their default value
+	 * @param test the statistical test of the mean test time: welch, z or none
+	 */
+	public BaselineComparison(final Map<String, String> thresholds, final String test) {
+		if (!WELCH_TEST.equals(test) && !Z_TEST.equals(test) && !NO_TEST.equals(test)) {
+			throw new ConfigurePluginException("Unknown statistical test " + test + ", expected "
+					+ WELCH_TEST + ", " + Z_TEST + " or " + NO_TEST);
+		}
+		this.test = test;
+		meanIncrease = getThreshold(thresholds, MEAN_INCREASE, DEFAULT_MEAN_INCREASE);
+		p95Increase = getThreshold(thresholds, P95_INCREASE, DEFAULT_P95_INCREASE);
+		p99Increase = getThreshold(thresholds, P99_INCREASE, DEFAULT_P99_INCREASE);
+		tpsDecrease = getThreshold(thresholds, TPS_DECREASE, DEFAULT_TPS_DECREASE);
+		errorRateIncrease = getThreshold(thresholds, ERROR_RATE_INCREASE, DEFAULT_ERROR_RATE_INCREASE);
+		significance = getThreshold(thresholds, SIGNIFICANCE, DEFAULT_SIGNIFICANCE);
+	}
+
+	private static double getThreshold(final Map<String, String> thresholds, final String name, final double defaultValue) {
+		final String value = thresholds != null ? thresholds.get(name) : null;
+		if (value == null || value.trim().length() == 0) {
+			return defaultValue;
+		}
+		try {
+			return Double.parseDouble(value.trim());
+		} catch (final NumberFormatException e) {
+			throw new ConfigurePluginException("Threshold " + name + " is not a number: " + value);
+		}
+	}
+
+	/**
+	 * @param baseline the statistics of the baseline run
+	 * @param current the statistics of the current run
+	 *
+	 * @return the description of every regression found, empty if there is none
+	 */
+	public List<String> compare(final RunStatistics baseline, final RunStatistics current) {
+		final List<String> regressions = new ArrayList<String>();
+
+		for (final Map.Entry<Integer, TestStatistics> entry : current.getTests().entrySet()) {
+			final TestStatistics baselineTest = baseline.getTests().get(entry.getKey());
+			if (baselineTest != null) {
+				compare("Test " + entry.getKey(), baseline, baselineTest, current, entry.getValue(), regressions);
+			}
+		}
+		compare("Totals", baseline, baseline.getTotal(), current, current.getTotal(), regressions);
+
+		return regressions;
+	}
+
+	private void compare(final String name, final RunStatistics baselineRun, final TestStatistics baseline,
+			final RunStatistics currentRun, final TestStatistics current, final List<String> regressions) {
+		if (baseline.getTests() > 1 && current.getTests() > 1) {
+			final double increase = percentChange(baseline.getMeanTime(), current.getMeanTime());
+			if (increase > meanIncrease) {
+				final double p = NO_TEST.equals(test) ? Double.NaN : meanTest(baseline, current);
+				if (isSignificant(p)) {
+					regressions.add(String.format(Locale.ENGLISH,
+							"%s: mean test time %.2f ms -> %.2f ms (+%.1f%%%s)",
+							name, baseline.getMeanTime(), current.getMeanTime(), increase, formatPValue(p)));
+				}
+			}
+
+			checkIncrease(name, "95th percentile", baseline.getPercentileTime(95), current.getPercentileTime(95),
+					p95Increase, regressions);
+			checkIncrease(name, "99th percentile", baseline.getPercentileTime(99), current.getPercentileTime(99),
+					p99Increase, regressions);
+
+			final double baselineTps = baselineRun.getTestsPerSecond(baseline);
+			final double currentTps = currentRun.getTestsPerSecond(current);
+			final double decrease = -percentChange(baselineTps, currentTps);
+			if (decrease > tpsDecrease) {
+				regressions.add(String.format(Locale.ENGLISH, "%s: TPS %.2f -> %.2f (-%.1f%%)",
+						name, baselineTps, currentTps, decrease));
+			}
+		}
+
+		final long baselineTotal = baseline.getTests() + baseline.getErrors();
+		final long currentTotal = current.getTests() + current.getErrors();
+		if (baselineTotal > 0 && currentTotal > 0) {
+			final double baselineRate = (double) baseline.getErrors() / baselineTotal;
+			final double currentRate = (double) current.getErrors() / currentTotal;
+			if ((currentRate - baselineRate) * 100 > errorRateIncrease) {
+				final double p = NO_TEST.equals(test) ? Double.NaN
+						: proportionZTest(baseline.getErrors(), baselineTotal, current.getErrors(), currentTotal);
+				if (isSignificant(p)) {
+					regressions.add(String.format(Locale.ENGLISH, "%s: error rate %.2f%% -> %.2f%%%s",
+							name, baselineRate * 100, currentRate * 100, formatPValue(p)));
+				}
+			}
+		}
+	}
+
+	private static void checkIncrease(final String name, final String statistic, final long baseline,
+			final long current, final double threshold, final List<String> regressions) {
+		final double increase = percentChange(baseline, current);
+		if (increase > threshold) {
+			regressions.add(String.format(Locale.ENGLISH, "%s: %s test time %d ms -> %d ms (+%.1f%%)",
+					name, statistic, baseline, current, increase));
+		}
+	}
+
+	/**
+	 * @param p a p-value, NaN if no statistical test was run
+	 */
+	private boolean isSignificant(final double p) {
+		return Double.isNaN(p) || p < significance;
+	}
+
+	private static String formatPValue(final double p) {
+		return Double.isNaN(p) ? "" : String.format(Locale.ENGLISH, ", p=%.4f", p);
+	}
+
+	private static double percentChange(final double baseline, final double current) {
+		if (baseline == 0) {
+			return current == 0 ? 0 : Double.POSITIVE_INFINITY;
+		}
+		return (current - baseline) / baseline * 100;
+	}
+
+	/**
+	 * @return the one-sided p-value of the configured test that the current mean is greater:
+	 * 	Welch's t-test, or the z-test approximating its statistic by the normal distribution
+	 */
+	private double meanTest(final TestStatistics baseline, final TestStatistics current) {
+		final double n1 = baseline.getTests();
+		final double n2 = current.getTests();
+		// sample variances from the population standard deviations
+		final double v1 = baseline.getStandardDeviation() * baseline.getStandardDeviation() * n1 / (n1 - 1);
+		final double v2 = current.getStandardDeviation() * current.getStandardDeviation() * n2 / (n2 - 1);
+		final double se2 = v1 / n1 + v2 / n2;
+		final double difference = current.getMeanTime() - baseline.getMeanTime();
+		if (se2 == 0) {
+			return difference > 0 ? 0 : 1;
+		}
+
+		final double t = difference / Math.sqrt(se2);
+		if (Z_TEST.equals(test)) {
+			return 1 - normalCumulative(t);
+		}
+		final double df = se2 * se2 / ((v1 / n1) * (v1 / n1) / (n1 - 1) + (v2 / n2) * (v2 / n2) / (n2 - 1));
+		return 1 - studentTCumulative(t, df);
+	}
+
+	/**
+	 * @return the one-sided p-value of the z-test that the current proportion is greater
+	 */
+	private static double proportionZTest(final long baselineCount, final long baselineTotal,
+			final long currentCount, final long currentTotal) {
+		final double pooled = (double) (baselineCount + currentCount) / (baselineTotal + currentTotal);
+		final double se = Math.sqrt(pooled * (1 - pooled) * (1.0 / baselineTotal + 1.0 / currentTotal));
+		final double difference = (double) currentCount / currentTotal - (double) baselineCount / baselineTotal;
+		if (se == 0) {
+			return difference > 0 ? 0 : 1;
+		}
+		return 1 - normalCumulative(difference / se);
+	}
+
+	/**
+	 * @return the cumulative distribution function of Student's t distribution
+	 */
+	private static double studentTCumulative(final double t, final double df) {
+		if (Double.isInfinite(df) || df > 1e7) {
+			return normalCumulative(t);
+		}
+		final double tail = 0.5 * regularizedIncompleteBeta(df / (df + t * t), df / 2, 0.5);
+		return t > 0 ? 1 - tail : tail;
+	}
+
+	/**
+	 * @return the cumulative distribution function of the standard normal distribution
+	 */
+	private static double normalCumulative(final double z) {
+		return 0.5 * erfc(-z / Math.sqrt(2));
+	}
+
+	/**
+	 * Complementary error function, with a fractional error below 1.2e-7 (Numerical Recipes).
+	 */
+	private static double erfc(final double x) {
+		final double z = Math.abs(x);
+		final double t = 1 / (1 + 0.5 * z);
+		final double r = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+				+ t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+				+ t * (-0.82215223 + t * 0.17087277)))))))));
+		return x >= 0 ? r : 2 - r;
+	}
+
+	/**
+	 * Regularized incomplete beta function I_x(a, b), by continued fraction (Numerical Recipes).
+	 */
+	private static double regularizedIncompleteBeta(final double x, final double a, final double b) {
+		if (x <= 0) {
+			return 0;
+		}
+		if (x >= 1) {
+			return 1;
+		}
+		final double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b)
+				+ a * Math.log(x) + b * Math.log(1 - x));
+		if (x < (a + 1) / (a + b + 2)) {
+			return front * betaContinuedFraction(x, a, b) / a;
+		}
+		return 1 - front * betaContinuedFraction(1 - x, b, a) / b;
+	}
+
+	private static double betaContinuedFraction(final double x, final double a, final double b) {
+		final double tiny = 1e-300;
+		final double epsilon = 1e-12;
+
+		double c = 1;
+		double d = 1 - (a + b) * x / (a + 1);
+		if (Math.abs(d) < tiny) {
+			d = tiny;
+		}
+		d = 1 / d;
+		double h = d;
+
+		for (int m = 1; m <= 300; m++) {
+			final int m2 = 2 * m;
+			double aa = m * (b - m) * x / ((a + m2 - 1) * (a + m2));
+			d = 1 + aa * d;
+			if (Math.abs(d) < tiny) {
+				d = tiny;
+			}
+			c = 1 + aa / c;
+			if (Math.abs(c) < tiny) {
+				c = tiny;
+			}
+			d = 1 / d;
+			h *= d * c;
+
+			aa = -(a + m) * (a + b + m) * x / ((a + m2) * (a + m2 + 1));
+			d = 1 + aa * d;
+			if (Math.abs(d) < tiny) {
+				d = tiny;
+			}
+			c = 1 + aa / c;
+			if (Math.abs(c) < tiny) {
+				c = tiny;
+			}
+			d = 1 / d;
+			final double delta = d * c;
+			h *= delta;
+			if (Math.abs(delta - 1) < epsilon) {
+				break;
+			}
+		}
+		return h;
+	}
+
+	/**
+	 * Logarithm of the gamma function, Lanczos approximation.
+	 */
+	private static double logGamma(final double x) {
+		final double[] coefficients = { 76.18009172947146, -86.50532032941677, 24.01409824083091,
+				-1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5 };
+		double y = x;
+		final double tmp = x + 5.5 - (x + 0.5) * Math.log(x + 5.5);
+		double series = 1.000000000190015;
+		for (final double coefficient : coefficients) {
+			series += coefficient / ++y;
+		}
+		return -tmp + Math.log(2.5066282746310005 * series / x);
+	}
+}
@@ -0,0 +1,342 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+
+package com.fides;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read data logs in parallel: every log is memory mapped and split at line
+ * boundaries into chunks, which a pool of threads parses into one aggregator
+ * per thread. The thread aggregators are added together at the end.
+ *
+ * Compressed logs cannot be split: each one is a single chunk, decompressed
+ * and parsed by one thread, and scheduled first as the longest chunks.
+ *
+ * Samples are not delivered in time order.
+ */
+public class ChunkedDataLogReader {
+
+	// default chunk size
+	public static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+
+	// bytes read to find a line boundary or the header line
+	private static final int SCAN_SIZE = 8 * 1024;
+
+	private final List<File> dataLogs;
+
+	private final int threads;
+
+	private final long chunkSize;
+
+	/**
+	 * @param dataLogs the data logs; the index of a log in this list is the process
+	 * 	number of its samples
+	 * @param threads the number of parsing threads
+	 * @param chunkSize the approximate size of the chunks, at most 2 GB
+	 */
+	public ChunkedDataLogReader(final List<File> dataLogs, final int threads, final long chunkSize) {
+		if (chunkSize <= 0 || chunkSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Chunk size must be between 1 byte and 2 GB");
+		}
+		this.dataLogs = dataLogs;
+		this.threads = Math.max(1, threads);
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Read all the data logs into the aggregator.
+	 *
+	 * @param aggregator the aggregator
+	 *
+	 * @throws IOException
+	 */
+	public void read(final ReportAggregator aggregator) throws IOException {
+		final long[] starts = new long[dataLogs.size()];
+		final long[] ends = new long[dataLogs.size()];
+		for (int i = 0; i < dataLogs.size(); i++) {
+			ends[i] = dataLogs.get(i).length();
+		}
+		read(aggregator, starts, ends);
+	}
+
+	/**
+	 * Read part of every data log into the aggregator.
+	 *
+	 * @param aggregator the aggregator
+	 * @param starts the offset of the first line to read in each data log
+	 * @param ends the offset just after the last line to read in each data log
+	 *
+	 * @throws IOException
+	 */
+	public void read(final ReportAggregator aggregator, final long[] starts, final long[] ends) throws IOException {
+		final List<Chunk> chunks = new ArrayList<Chunk>();
+		for (int i = 0; i < dataLogs.size(); i++) {
+			split(i, dataLogs.get(i), starts[i], ends[i], chunks);
+		}
+		Collections.sort(chunks);
+
+		final AtomicInteger nextChunk = new AtomicInteger();
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, chunks.size())));
+		try {
+			final List<Future<ReportAggregator>> parts = new ArrayList<Future<ReportAggregator>>();
+			for (int i = 0; i < threads && i < chunks.size(); i++) {
+				parts.add(executor.submit(new Callable<ReportAggregator>() {
+
+					@Override
+					public ReportAggregator call() throws IOException {
+						final ReportAggregator part = aggregator.createPart();
+						int index = nextChunk.getAndIncrement();
+						while (index < chunks.size()) {
+							chunks.get(index).read(part);
+							index = nextChunk.getAndIncrement();
+						}
+						return part;
+					}
+				}));
+			}
+
+			for (final Future<ReportAggregator> part : parts) {
+				aggregator.add(part.get());
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading data logs.");
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException("Unable to read data logs.", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Split part of a data log into chunks ending at line boundaries.
+	 */
+	private void split(final int process, final File dataLog, final long from, final long to,
+			final List<Chunk> chunks) throws IOException {
+		if (LogFiles.isCompressed(dataLog)) {
+			if (from < to) {
+				chunks.add(new Chunk(process, dataLog, null, 0, dataLog.length()));
+			}
+			return;
+		}
+
+		final RandomAccessFile file = new RandomAccessFile(dataLog, "r");
+		try {
+			final long length = Math.min(to, file.length());
+			final String header = readHeader(file);
+
+			long start = from;
+			while (start < length) {
+				final long end = Math.min(nextLineStart(file, Math.min(start + chunkSize, length)), length);
+				chunks.add(new Chunk(process, dataLog, header, start, end));
+				start = end;
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * @return the header line at the beginning of the data log, or null if there is none
+	 */
+	private static String readHeader(final RandomAccessFile file) throws IOException {
+		final byte[] buffer = new byte[SCAN_SIZE];
+		file.seek(0);
+		final int read = Math.max(0, file.read(buffer));
+
+		int end = 0;
+		while (end < read && buffer[end] != '\n') {
+			end++;
+		}
+		if (!DataLogParser.isHeader(buffer, 0, end)) {
+			return null;
+		}
+		return new String(buffer, 0, end, "ISO-8859-1").trim();
+	}
+
+	/**
+	 * @param dataLog a data log, possibly still being written
+	 *
+	 * @return the offset just after the last line terminator of the data log, or
+	 * 	the file length for a compressed data log
+	 *
+	 * @throws IOException
+	 */
+	public static long lastLineEnd(final File dataLog) throws IOException {
+		if (LogFiles.isCompressed(dataLog)) {
+			return dataLog.length();
+		}
+
+		final RandomAccessFile file = new RandomAccessFile(dataLog, "r");
+		try {
+			final byte[] buffer = new byte[SCAN_SIZE];
+			long end = file.length();
+			while (end > 0) {
+				final int size = (int) Math.min(buffer.length, end);
+				file.seek(end - size);
+				file.readFully(buffer, 0, size);
+				for (int i = size - 1; i >= 0; i--) {
+					if (buffer[i] == '\n') {
+						return end - size + i + 1;
+					}
+				}
+				end -= size;
+			}
+			return 0;
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * @return the offset of the first line starting at or after the position
+	 */
+	private static long nextLineStart(final RandomAccessFile file, final long position) throws IOException {
+		final long length = file.length();
+		if (position >= length || position == 0) {
+			return Math.min(position, length);
+		}
+
+		final byte[] buffer = new byte[SCAN_SIZE];
+		long offset = position - 1;
+		file.seek(offset);
+		int read = file.read(buffer);
+		while (read > 0) {
+			for (int i = 0; i < read; i++) {
+				if (buffer[i] == '\n') {
+					return offset + i + 1;
+				}
+			}
+			offset += read;
+			read = file.read(buffer);
+		}
+		return length;
+	}
+
+	/**
+	 * A range of whole lines of a data log.
+	 */
+	private static final class Chunk implements Comparable<Chunk> {
+
+		private final int process;
+
+		private final File dataLog;
+
+		private final String header;
+
+		private final long start;
+
+		private final long end;
+
+		private Chunk(final int process, final File dataLog, final String header, final long start, final long end) {
+			this.process = process;
+			this.dataLog = dataLog;
+			this.header = header;
+			this.start = start;
+			this.end = end;
+		}
+
+		private void read(final SampleListener listener) throws IOException {
+			if (LogFiles.isCompressed(dataLog)) {
+				final DataLogReader reader = new DataLogReader(LogFiles.open(dataLog));
+				try {
+					read(reader, listener);
+				} finally {
+					reader.close();
+				}
+				return;
+			}
+
+			final FileInputStream in = new FileInputStream(dataLog);
+			try {
+				final FileChannel channel = in.getChannel();
+				final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+
+				final DataLogParser parser = new DataLogParser();
+				if (header != null) {
+					parser.parseHeader(header);
+				}
+
+				read(new DataLogReader(new ByteBufferInputStream(buffer), parser, start), listener);
+			} finally {
+				in.close();
+			}
+		}
+
+		private void read(final DataLogReader reader, final SampleListener listener) throws IOException {
+			final Sample sample = new Sample();
+			while (reader.next(sample)) {
+				sample.setProcess(process);
+				listener.sample(sample);
+			}
+		}
+
+		@Override
+		public int compareTo(final Chunk other) {
+			final boolean compressed = LogFiles.isCompressed(dataLog);
+			if (compressed != LogFiles.isCompressed(other.dataLog)) {
+				return compressed ? -1 : 1;
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * Read a memory mapped region as a stream.
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(final ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(final byte[] bytes, final int offset, final int length) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			final int read = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, read);
+			return read;
+		}
+	}
+}
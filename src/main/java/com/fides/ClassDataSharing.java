@@ -0,0 +1,204 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Class data sharing archive of the classes loaded by the Grinder worker JVMs, dumped by a
+ * training run of one worker and shared by the workers of the following runs.
+ *
+ * The training agent must be run the way the goal runs its agents, since Grinder adds the
+ * classpath of the agent to the classpath of its workers and a JVM ignores an archive dumped
+ * for another classpath. The archive is trained again when the worker JVM, its arguments or
+ * either classpath change; a training which dumped no archive is remembered, and is not tried
+ * again until they change. Dumping an archive at exit requires the workers to run on JDK 13
+ * or later.
+ */
+public class ClassDataSharing {
+
+	// archive file name
+	public static final String ARCHIVE_FILE_NAME = "workers.jsa";
+
+	// file name of the worker configuration of the last training, and of its outcome
+	public static final String FINGERPRINT_FILE_NAME = "workers.jsa.properties";
+
+	// log subdirectory of the training run
+	public static final String TRAINING_DIRECTORY = "cds-training";
+
+	private static final String FINGERPRINT_PROPERTY = "fingerprint";
+
+	private static final String DUMPED_PROPERTY = "dumped";
+
+	private final File directory;
+
+	private final String fingerprint;
+
+	/**
+	 * @param directory the directory of the archive
+	 * @param properties the Grinder properties of the workers
+	 * @param classPath the entries of the worker classpath, in order
+	 * @param agentClassPath the classpath of the JVM running the agent
+	 */
+	public ClassDataSharing(final File directory, final Properties properties, final List<String> classPath,
+			final String agentClassPath) {
+		this.directory = directory;
+
+		final StringBuilder fingerprint = new StringBuilder();
+		fingerprint.append(properties.getProperty("grinder.jvm", "java")).append('\n');
+		fingerprint.append(properties.getProperty("grinder.jvm.arguments", "")).append('\n');
+		fingerprint.append(agentClassPath).append('\n');
+		for (final String entry : classPath) {
+			final File file = new File(entry);
+			fingerprint.append(entry).append(':').append(file.length()).append(':').append(file.lastModified()).append('\n');
+		}
+		this.fingerprint = fingerprint.toString();
+	}
+
+	/**
+	 * @return the archive file
+	 */
+	public File getArchive() {
+		return new File(directory, ARCHIVE_FILE_NAME);
+	}
+
+	/**
+	 * @return the worker JVM argument mapping the archive
+	 */
+	public String getJvmArgument() {
+		return "-XX:SharedArchiveFile=" + MavenUtilities.normalizePath(getArchive().getAbsolutePath());
+	}
+
+	/**
+	 * @return true if the archive was dumped for the current worker configuration
+	 *
+	 * @throws IOException
+	 */
+	public boolean isValid() throws IOException {
+		final Properties training = loadTraining();
+		return getArchive().exists() && training != null && Boolean.parseBoolean(training.getProperty(DUMPED_PROPERTY));
+	}
+
+	/**
+	 * @return true if a training of the current worker configuration dumped no archive
+	 *
+	 * @throws IOException
+	 */
+	public boolean hasFailed() throws IOException {
+		final Properties training = loadTraining();
+		return training != null && !Boolean.parseBoolean(training.getProperty(DUMPED_PROPERTY));
+	}
+
+	/**
+	 * Write the Grinder properties of a training agent, running one worker thread of the test
+	 * script once and dumping the classes it loads.
+	 *
+	 * @param properties the Grinder properties of the workers
+	 * @param script the test script
+	 *
+	 * @return the Grinder properties file of the training agent
+	 *
+	 * @throws IOException
+	 */
+	public File prepareTraining(final Properties properties, final File script) throws IOException {
+		directory.mkdirs();
+		final File logDirectory = new File(directory, TRAINING_DIRECTORY);
+		logDirectory.mkdirs();
+		final File temporary = getTemporaryArchive();
+		temporary.delete();
+
+		final Properties training = new Properties();
+		training.putAll(properties);
+		training.remove("grinder.duration");
+		training.remove("grinder.processIncrement");
+		training.setProperty("grinder.processes", "1");
+		training.setProperty("grinder.threads", "1");
+		training.setProperty("grinder.runs", "1");
+		training.setProperty("grinder.useConsole", "false");
+		training.setProperty("grinder.script", MavenUtilities.normalizePath(script.getAbsolutePath()));
+		training.setProperty("grinder.logDirectory", MavenUtilities.normalizePath(logDirectory.getPath()));
+		final String arguments = properties.getProperty("grinder.jvm.arguments", "");
+		training.setProperty("grinder.jvm.arguments", (arguments.length() > 0 ? arguments + " " : "")
+				+ "-XX:ArchiveClassesAtExit=" + MavenUtilities.normalizePath(temporary.getAbsolutePath()));
+
+		final File file = new File(directory, "grinder_" + TRAINING_DIRECTORY + ".properties");
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			training.store(out, "Grinder Class Data Sharing Training Properties");
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Publish the archive dumped by the training agent, and record the outcome of the training.
+	 *
+	 * @param succeeded true if the training agent succeeded
+	 *
+	 * @return true if the archive was dumped
+	 *
+	 * @throws IOException
+	 */
+	public boolean completeTraining(final boolean succeeded) throws IOException {
+		final File temporary = getTemporaryArchive();
+		final boolean dumped = succeeded && temporary.exists();
+		if (dumped) {
+			FileUtil.replace(temporary, getArchive());
+		} else {
+			temporary.delete();
+		}
+
+		final Properties training = new Properties();
+		training.setProperty(FINGERPRINT_PROPERTY, fingerprint);
+		training.setProperty(DUMPED_PROPERTY, String.valueOf(dumped));
+		final OutputStream out = new FileOutputStream(new File(directory, FINGERPRINT_FILE_NAME));
+		try {
+			training.store(out, "Worker configuration of " + ARCHIVE_FILE_NAME);
+		} finally {
+			out.close();
+		}
+		return dumped;
+	}
+
+	private File getTemporaryArchive() {
+		return new File(directory, ARCHIVE_FILE_NAME + ".tmp");
+	}
+
+	/**
+	 * @return the outcome of the last training, or null if it was not for the current worker configuration
+	 */
+	private Properties loadTraining() throws IOException {
+		final File file = new File(directory, FINGERPRINT_FILE_NAME);
+		if (!file.exists()) {
+			return null;
+		}
+		final Properties training = new Properties();
+		final InputStream in = new FileInputStream(file);
+		try {
+			training.load(in);
+		} finally {
+			in.close();
+		}
+		return fingerprint.equals(training.getProperty(FINGERPRINT_PROPERTY)) ? training : null;
+	}
+}
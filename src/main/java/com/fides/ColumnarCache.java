@@ -0,0 +1,309 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Columnar binary copy of a data log, read back much faster than the text log.
+ *
+ * The samples are stored in row groups holding one array per column: start times, test
+ * numbers, test times, errors, threads and runs. A cache records the length and the
+ * modification time of its data log and is rebuilt once the data log has changed. Row groups
+ * are memory-mapped and read concurrently.
+ */
+public class ColumnarCache {
+
+	// cache file name suffix
+	public static final String FILE_SUFFIX = ".columns";
+
+	// identify a cache file and its layout
+	private static final int FILE_COOKIE = 0x47434301;
+
+	// bytes of the header: cookie, data log length and modification time
+	private static final int HEADER_SIZE = 4 + 8 + 8;
+
+	// number of rows of a full row group
+	private static final int GROUP_ROWS = 64 * 1024;
+
+	// bytes of a row: start time, test, test time, errors, thread and run
+	private static final int ROW_SIZE = 8 + 4 * 5;
+
+	// cache files, the index of a cache is the process number of its samples
+	private final List<File> caches;
+
+	// number of threads reading the row groups
+	private final int threads;
+
+	/**
+	 * @param caches the valid cache files
+	 * @param threads the number of threads reading the row groups
+	 */
+	public ColumnarCache(final List<File> caches, final int threads) {
+		this.caches = caches;
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * @param directory the cache directory
+	 * @param dataLog a data log
+	 *
+	 * @return the cache file of the data log
+	 */
+	public static File getCacheFile(final File directory, final File dataLog) {
+		return new File(directory, LogFiles.getLogName(dataLog) + FILE_SUFFIX);
+	}
+
+	/**
+	 * @param cache a cache file
+	 * @param dataLog its data log
+	 *
+	 * @return true if the cache holds the current content of the data log
+	 */
+	public static boolean isValid(final File cache, final File dataLog) {
+		if (!cache.isFile() || cache.length() < HEADER_SIZE) {
+			return false;
+		}
+		try {
+			final DataInputStream in = new DataInputStream(new FileInputStream(cache));
+			try {
+				return in.readInt() == FILE_COOKIE
+						&& in.readLong() == dataLog.length()
+						&& in.readLong() == dataLog.lastModified();
+			} finally {
+				in.close();
+			}
+		} catch (final IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Convert a data log, replacing its cache file once complete.
+	 *
+	 * @param dataLog the data log
+	 * @param cache the cache file
+	 *
+	 * @throws IOException
+	 */
+	public static void convert(final File dataLog, final File cache) throws IOException {
+		final File directory = cache.getParentFile();
+		if (directory != null && !directory.exists()) {
+			directory.mkdirs();
+		}
+
+		// the data log may be appended while it is converted
+		final long length = dataLog.length();
+		final long lastModified = dataLog.lastModified();
+
+		final File temporary = new File(cache.getPath() + ".tmp");
+		final DataLogReader reader = new DataLogReader(DataLogMerger.open(dataLog));
+		final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(temporary), 256 * 1024));
+		try {
+			out.writeInt(FILE_COOKIE);
+			out.writeLong(length);
+			out.writeLong(lastModified);
+
+			final Sample sample = new Sample();
+			final long[] startTimes = new long[GROUP_ROWS];
+			final int[][] columns = new int[5][GROUP_ROWS];
+			int rows = 0;
+			while (reader.next(sample)) {
+				startTimes[rows] = sample.getStartTime();
+				columns[0][rows] = sample.getTest();
+				columns[1][rows] = (int) Math.min(Integer.MAX_VALUE, sample.getTestTime());
+				columns[2][rows] = (int) Math.min(Integer.MAX_VALUE, sample.getErrors());
+				columns[3][rows] = sample.getThread();
+				columns[4][rows] = sample.getRun();
+				if (++rows == GROUP_ROWS) {
+					writeGroup(out, rows, startTimes, columns);
+					rows = 0;
+				}
+			}
+			if (rows > 0) {
+				writeGroup(out, rows, startTimes, columns);
+			}
+		} finally {
+			out.close();
+			reader.close();
+		}
+		FileUtil.replace(temporary, cache);
+	}
+
+	private static void writeGroup(final DataOutputStream out, final int rows, final long[] startTimes,
+			final int[][] columns) throws IOException {
+		out.writeInt(rows);
+		for (int i = 0; i < rows; i++) {
+			out.writeLong(startTimes[i]);
+		}
+		for (final int[] column : columns) {
+			for (int i = 0; i < rows; i++) {
+				out.writeInt(column[i]);
+			}
+		}
+	}
+
+	/**
+	 * Read all the row groups into the aggregator.
+	 *
+	 * @param aggregator the aggregator
+	 *
+	 * @throws IOException
+	 */
+	public void read(final ReportAggregator aggregator) throws IOException {
+		final List<Group> groups = new ArrayList<Group>();
+		for (int i = 0; i < caches.size(); i++) {
+			listGroups(i, caches.get(i), groups);
+		}
+
+		final AtomicInteger nextGroup = new AtomicInteger();
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, groups.size())));
+		try {
+			final List<Future<ReportAggregator>> parts = new ArrayList<Future<ReportAggregator>>();
+			for (int i = 0; i < threads && i < groups.size(); i++) {
+				parts.add(executor.submit(new Callable<ReportAggregator>() {
+
+					@Override
+					public ReportAggregator call() throws IOException {
+						final ReportAggregator part = aggregator.createPart();
+						final Sample sample = new Sample();
+						int index = nextGroup.getAndIncrement();
+						while (index < groups.size()) {
+							groups.get(index).read(part, sample);
+							index = nextGroup.getAndIncrement();
+						}
+						return part;
+					}
+				}));
+			}
+
+			for (final Future<ReportAggregator> part : parts) {
+				aggregator.add(part.get());
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading data log caches.");
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException("Unable to read data log caches.", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * List the row groups of a cache file from their row counts.
+	 */
+	private static void listGroups(final int process, final File cache, final List<Group> groups) throws IOException {
+		final RandomAccessFile file = new RandomAccessFile(cache, "r");
+		try {
+			final long length = file.length();
+			long position = HEADER_SIZE;
+			while (position + 4 <= length) {
+				file.seek(position);
+				final int rows = file.readInt();
+				final long size = (long) rows * ROW_SIZE;
+				if (rows <= 0 || rows > GROUP_ROWS || position + 4 + size > length) {
+					throw new IOException("Corrupted data log cache " + cache.getPath());
+				}
+				groups.add(new Group(process, cache, position + 4, rows));
+				position += 4 + size;
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * A row group of a cache file.
+	 */
+	private static final class Group {
+
+		private final int process;
+
+		private final File cache;
+
+		private final long offset;
+
+		private final int rows;
+
+		Group(final int process, final File cache, final long offset, final int rows) {
+			this.process = process;
+			this.cache = cache;
+			this.offset = offset;
+			this.rows = rows;
+		}
+
+		void read(final SampleListener listener, final Sample sample) throws IOException {
+			final RandomAccessFile file = new RandomAccessFile(cache, "r");
+			final MappedByteBuffer buffer;
+			try {
+				buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, offset, (long) rows * ROW_SIZE);
+			} finally {
+				file.close();
+			}
+
+			final LongBuffer startTimes = buffer.asLongBuffer();
+			final IntBuffer tests = column(buffer, 0);
+			final IntBuffer testTimes = column(buffer, 1);
+			final IntBuffer errors = column(buffer, 2);
+			final IntBuffer threads = column(buffer, 3);
+			final IntBuffer runs = column(buffer, 4);
+
+			sample.setProcess(process);
+			for (int i = 0; i < rows; i++) {
+				sample.setStartTime(startTimes.get(i));
+				sample.setTest(tests.get(i));
+				sample.setTestTime(testTimes.get(i));
+				sample.setErrors(errors.get(i));
+				sample.setThread(threads.get(i));
+				sample.setRun(runs.get(i));
+				listener.sample(sample);
+			}
+		}
+
+		/**
+		 * @return the int column following the start times
+		 */
+		private IntBuffer column(final ByteBuffer buffer, final int column) {
+			final ByteBuffer view = buffer.duplicate();
+			view.position(rows * 8 + column * rows * 4);
+			return view.slice().asIntBuffer();
+		}
+	}
+}
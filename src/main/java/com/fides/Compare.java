@@ -0,0 +1,151 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+
+package com.fides;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generate the grinder report and compare the run with a baseline run,
+ * failing the build on latency, throughput or error rate regressions.
+ *
+ * @goal compare
+ */
+public class Compare extends Report {
+
+	// Compare logger
+	private final Logger logger = LoggerFactory.getLogger(Compare.class);
+
+	/**
+	 * The statistics file of the baseline run.
+	 *
+	 * @parameter expression="${grinder.compare.baseline}" default-value="${basedir}/src/grinder/baseline/statistics.bin"
+	 */
+	private File baseline;
+
+	/**
+	 * Identifier of a run of the log directory to compare with, rather than the baseline file.
+	 *
+	 * @parameter expression="${grinder.compare.baselineRun}"
+	 */
+	private String baselineRun;
+
+	/**
+	 * Regression thresholds defined in the pom.xml file of Maven project: meanIncrease,
+	 * p95Increase, p99Increase and tpsDecrease in percent, errorRateIncrease in percentage
+	 * points, and the significance level of the statistical tests.
+	 *
+	 * @parameter
+	 */
+	private Map<String, String> thresholds;
+
+	/**
+	 * Statistical test deciding whether a slower mean test time or a higher error rate is
+	 * significant: welch for Welch's t-test, z for a large-sample z-test, or none to compare
+	 * against the thresholds alone.
+	 *
+	 * @parameter expression="${grinder.compare.test}" default-value="welch"
+	 */
+	private String statisticalTest;
+
+	/**
+	 * Save the statistics of this run as the new baseline instead of comparing. A baseline must
+	 * be saved this way before the first comparison.
+	 *
+	 * @parameter expression="${grinder.compare.updateBaseline}" default-value="false"
+	 */
+	private boolean updateBaseline;
+
+	/**
+	 * Constructor
+	 */
+	public Compare() {
+		super();
+	}
+
+	@Override
+	public Logger getLogger() {
+		return logger;
+	}
+
+	@Override
+	protected boolean isJythonEngine() {
+		// the comparison needs the statistics of the native engine
+		return false;
+	}
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		super.execute();
+
+		final RunStatistics current = getRunStatistics();
+		if (current == null) {
+			throw new MojoExecutionException("Unable to compute the statistics of the run.");
+		}
+
+		final List<String> regressions;
+		if (baselineRun != null) {
+			try {
+				regressions = new BaselineComparison(thresholds, statisticalTest).compare(
+						getRunHistory().loadStatistics(baselineRun), current);
+			} catch (final IOException e) {
+				throw new MojoExecutionException("Unable to compare with run " + baselineRun, e);
+			}
+			report(regressions, "run " + baselineRun);
+			return;
+		}
+
+		try {
+			if (updateBaseline) {
+				baseline.getParentFile().mkdirs();
+				current.save(baseline);
+				logger.info("Saved this run as baseline " + baseline.getPath());
+				return;
+			}
+			if (!baseline.exists()) {
+				throw new MojoFailureException("No baseline " + baseline.getPath()
+						+ ", run with -Dgrinder.compare.updateBaseline=true to save this run as baseline");
+			}
+
+			regressions = new BaselineComparison(thresholds, statisticalTest).compare(RunStatistics.load(baseline), current);
+		} catch (final IOException e) {
+			throw new MojoExecutionException("Unable to compare with baseline " + baseline.getPath(), e);
+		}
+
+		report(regressions, "baseline " + baseline.getPath());
+	}
+
+	/**
+	 * Log the regressions found, failing the build if there is any.
+	 */
+	private void report(final List<String> regressions, final String against) throws MojoFailureException {
+		if (!regressions.isEmpty()) {
+			for (final String regression : regressions) {
+				logger.error(regression);
+			}
+			throw new MojoFailureException(regressions.size() + " performance regression(s) against " + against);
+		}
+
+		logger.info("No performance regression against " + against);
+	}
+}
@@ -0,0 +1,196 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Grinder properties and worker classpath of the previous configuration of the plug-in, reused
+ * by the next goals as long as the fingerprint of the configuration inputs is unchanged.
+ */
+public class ConfigureCache {
+
+	// cache file name in the configuration directory
+	public static final String FILE_NAME = "configure.properties";
+
+	// version of the cache file, changed with the content of the configuration
+	private static final String VERSION = "1";
+
+	private static final String FINGERPRINT_KEY = "configure.fingerprint";
+
+	private static final String CLASSPATH_KEY = "configure.classpath";
+
+	// prefix of the keys of the Grinder properties
+	private static final String PROPERTY_PREFIX = "property.";
+
+	private final File file;
+
+	private final StringBuilder inputs = new StringBuilder(VERSION).append('\n');
+
+	private final Properties properties = new Properties();
+
+	private final List<String> classPath = new ArrayList<String>();
+
+	/**
+	 * @param directory the configuration directory
+	 */
+	public ConfigureCache(final File directory) {
+		this.file = new File(directory, FILE_NAME);
+	}
+
+	/**
+	 * @param name the name of an input
+	 * @param value its value, may be null
+	 */
+	public void addInput(final String name, final String value) {
+		inputs.append(name).append('=').append(value).append('\n');
+	}
+
+	/**
+	 * @param input an input file or directory, identified by its path, size and date
+	 */
+	public void addInput(final File input) {
+		inputs.append(input.getPath()).append(':').append(input.length()).append(':').append(input.lastModified()).append('\n');
+	}
+
+	/**
+	 * @param input an input map, in the order of its entries
+	 */
+	public void addInput(final Map<?, ?> input) {
+		if (input != null) {
+			for (final Map.Entry<?, ?> entry : input.entrySet()) {
+				addInput(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+			}
+		}
+	}
+
+	/**
+	 * Load the previous configuration.
+	 *
+	 * @return true if the previous configuration had the same inputs
+	 *
+	 * @throws IOException
+	 */
+	public boolean load() throws IOException {
+		if (!file.exists()) {
+			return false;
+		}
+		final Properties cache = new Properties();
+		final InputStream in = new FileInputStream(file);
+		try {
+			cache.load(in);
+		} finally {
+			in.close();
+		}
+		if (!getFingerprint().equals(cache.getProperty(FINGERPRINT_KEY))) {
+			return false;
+		}
+
+		properties.clear();
+		for (final String key : cache.stringPropertyNames()) {
+			if (key.startsWith(PROPERTY_PREFIX)) {
+				properties.setProperty(key.substring(PROPERTY_PREFIX.length()), cache.getProperty(key));
+			}
+		}
+		classPath.clear();
+		final String entries = cache.getProperty(CLASSPATH_KEY, "");
+		if (entries.length() > 0) {
+			classPath.addAll(Arrays.asList(entries.split(File.pathSeparator)));
+		}
+		return true;
+	}
+
+	/**
+	 * Save the configuration of the current inputs.
+	 *
+	 * @param properties the Grinder properties
+	 * @param classPath the entries of the worker classpath, in order
+	 *
+	 * @throws IOException
+	 */
+	public void save(final Properties properties, final List<String> classPath) throws IOException {
+		final Properties cache = new Properties();
+		cache.setProperty(FINGERPRINT_KEY, getFingerprint());
+		for (final String key : properties.stringPropertyNames()) {
+			cache.setProperty(PROPERTY_PREFIX + key, properties.getProperty(key));
+		}
+		final StringBuilder entries = new StringBuilder();
+		for (final String entry : classPath) {
+			if (entries.length() > 0) {
+				entries.append(File.pathSeparator);
+			}
+			entries.append(entry);
+		}
+		cache.setProperty(CLASSPATH_KEY, entries.toString());
+
+		file.getParentFile().mkdirs();
+		final File temporary = new File(file.getPath() + ".tmp");
+		final OutputStream out = new FileOutputStream(temporary);
+		try {
+			cache.store(out, "Grinder plug-in configuration");
+		} finally {
+			out.close();
+		}
+		FileUtil.replace(temporary, file);
+	}
+
+	/**
+	 * @return the Grinder properties of the previous configuration
+	 */
+	public Properties getProperties() {
+		return properties;
+	}
+
+	/**
+	 * @return the entries of the worker classpath of the previous configuration
+	 */
+	public List<String> getClassPath() {
+		return classPath;
+	}
+
+	/**
+	 * @return the hexadecimal SHA-1 digest of the inputs
+	 */
+	private String getFingerprint() {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+			digest.update(inputs.toString().getBytes("UTF-8"));
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 is not available.", e);
+		} catch (final UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 is not available.", e);
+		}
+
+		final StringBuilder hex = new StringBuilder();
+		for (final byte b : digest.digest()) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,139 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+
+package com.fides;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merge the data logs of several worker processes into one stream of samples,
+ * taking next the sample of the log whose next sample started first.
+ *
+ * Grinder writes a sample when its test ends, so no data log is in start time
+ * order and neither is the merged stream: a sample may come after samples that
+ * started up to one test time later. The listeners must not rely on the order.
+ *
+ * Only one sample per data log is held in memory, so the merge runs in memory
+ * proportional to the number of logs, not to their size. Compressed logs are
+ * decompressed on one background thread each.
+ */
+public class DataLogMerger {
+
+	private final List<File> dataLogs;
+
+	/**
+	 * @param dataLogs the data logs to merge; the index of a log in this list
+	 * 	is the process number of its samples
+	 */
+	public DataLogMerger(final List<File> dataLogs) {
+		this.dataLogs = dataLogs;
+	}
+
+	/**
+	 * @param dataLog a data log file
+	 *
+	 * @return the process name of the data log, its file name without the data log suffix
+	 */
+	public static String getProcessName(final File dataLog) {
+		final String name = LogFiles.getLogName(dataLog);
+		final int suffix = name.indexOf("-data.log");
+		return suffix > 0 ? name.substring(0, suffix) : name;
+	}
+
+	/**
+	 * Read all the data logs, notifying the listener of every sample, roughly in start time order.
+	 *
+	 * @param listener the listener
+	 *
+	 * @throws IOException
+	 */
+	public void merge(final SampleListener listener) throws IOException {
+		final PriorityQueue<Cursor> queue = new PriorityQueue<Cursor>(Math.max(1, dataLogs.size()));
+		final List<Cursor> cursors = new ArrayList<Cursor>(dataLogs.size());
+
+		try {
+			for (int i = 0; i < dataLogs.size(); i++) {
+				final Cursor cursor = new Cursor(i, new DataLogReader(open(dataLogs.get(i))));
+				cursors.add(cursor);
+				if (cursor.advance()) {
+					queue.add(cursor);
+				}
+			}
+
+			while (!queue.isEmpty()) {
+				final Cursor cursor = queue.poll();
+				listener.sample(cursor.sample);
+				if (cursor.advance()) {
+					queue.add(cursor);
+				}
+			}
+		} finally {
+			for (final Cursor cursor : cursors) {
+				cursor.reader.close();
+			}
+		}
+	}
+
+	/**
+	 * @return a stream of the content of a data log, decompressed on a background thread if it is compressed
+	 */
+	static InputStream open(final File dataLog) throws IOException {
+		if (LogFiles.isCompressed(dataLog)) {
+			return new ReadAheadInputStream(LogFiles.open(dataLog), "Decompress " + dataLog.getName());
+		}
+		return new FileInputStream(dataLog);
+	}
+
+	/**
+	 * The next sample of one data log.
+	 */
+	private static final class Cursor implements Comparable<Cursor> {
+
+		private final DataLogReader reader;
+
+		private final Sample sample = new Sample();
+
+		private final int process;
+
+		private Cursor(final int process, final DataLogReader reader) {
+			this.process = process;
+			this.reader = reader;
+		}
+
+		private boolean advance() throws IOException {
+			if (reader.next(sample)) {
+				sample.setProcess(process);
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public int compareTo(final Cursor other) {
+			final long time = sample.getStartTime();
+			final long otherTime = other.sample.getStartTime();
+			if (time != otherTime) {
+				return time < otherTime ? -1 : 1;
+			}
+			return process - other.process;
+		}
+	}
+}
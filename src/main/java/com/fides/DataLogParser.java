@@ -0,0 +1,197 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+
+package com.fides;
+
+/**
+ * Parse the lines of a Grinder data log without creating intermediate strings.
+ *
+ * The column positions are taken from the header line written by Grinder at the
+ * beginning of every data log, so that the HTTP plug-in columns and later column
+ * additions do not matter.
+ */
+public final class DataLogParser {
+
+	// Data log header column names
+	private static final String THREAD_COLUMN = "Thread";
+	private static final String RUN_COLUMN = "Run";
+	private static final String TEST_COLUMN = "Test";
+	private static final String START_TIME_COLUMN = "Start time (ms since Epoch)";
+	private static final String TEST_TIME_COLUMN = "Test time";
+	private static final String ERRORS_COLUMN = "Errors";
+
+	// column positions, defaulting to the layout written by Grinder 3
+	private int threadColumn = 0;
+	private int runColumn = 1;
+	private int testColumn = 2;
+	private int startTimeColumn = 3;
+	private int testTimeColumn = 4;
+	private int errorsColumn = 5;
+
+	// the last column this parser needs to read
+	private int lastColumn = 5;
+
+	// the header line, or null if not seen yet
+	private String header = null;
+
+	public String getHeader() {
+		return header;
+	}
+
+	/**
+	 * @return true if the line is a header line rather than a sample
+	 */
+	public static boolean isHeader(final byte[] buffer, final int offset, final int length) {
+		for (int i = offset; i < offset + length; i++) {
+			final byte b = buffer[i];
+			if (b != ' ' && b != '\t') {
+				return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z');
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Read the column positions from a data log header line.
+	 *
+	 * @param line the header line
+	 */
+	public void parseHeader(final String line) {
+		final String[] columns = line.split(",");
+
+		int thread = -1, run = -1, test = -1, startTime = -1, testTime = -1, errors = -1;
+		for (int i = 0; i < columns.length; i++) {
+			final String column = columns[i].trim();
+			if (THREAD_COLUMN.equals(column)) {
+				thread = i;
+			} else if (RUN_COLUMN.equals(column)) {
+				run = i;
+			} else if (TEST_COLUMN.equals(column)) {
+				test = i;
+			} else if (START_TIME_COLUMN.equals(column)) {
+				startTime = i;
+			} else if (TEST_TIME_COLUMN.equals(column)) {
+				testTime = i;
+			} else if (ERRORS_COLUMN.equals(column)) {
+				errors = i;
+			}
+		}
+
+		if (test < 0 || startTime < 0 || testTime < 0) {
+			throw new IllegalArgumentException("Not a Grinder data log header: " + line);
+		}
+
+		threadColumn = thread;
+		runColumn = run;
+		testColumn = test;
+		startTimeColumn = startTime;
+		testTimeColumn = testTime;
+		errorsColumn = errors;
+		lastColumn = Math.max(Math.max(Math.max(thread, run), Math.max(test, startTime)), Math.max(testTime, errors));
+		header = line;
+	}
+
+	/**
+	 * Parse one data log line.
+	 *
+	 * @param buffer the bytes holding the line
+	 * @param offset the first byte of the line
+	 * @param length the line length, without the line terminator
+	 * @param sample the sample to fill
+	 *
+	 * @return false if the line is blank, a header, or malformed
+	 */
+	public boolean parse(final byte[] buffer, final int offset, final int length, final Sample sample) {
+		final int end = offset + length;
+		int position = offset;
+		int column = 0;
+
+		sample.setThread(0);
+		sample.setRun(0);
+		sample.setErrors(0);
+
+		while (column <= lastColumn) {
+			// skip leading blanks
+			while (position < end && buffer[position] == ' ') {
+				position++;
+			}
+			if (position >= end) {
+				return false;
+			}
+
+			boolean negative = false;
+			if (buffer[position] == '-') {
+				negative = true;
+				position++;
+			}
+
+			long value = 0;
+			int digits = 0;
+			while (position < end) {
+				final int digit = buffer[position] - '0';
+				if (digit < 0 || digit > 9) {
+					break;
+				}
+				value = value * 10 + digit;
+				digits++;
+				position++;
+			}
+
+			// skip trailing blanks and carriage return
+			while (position < end && (buffer[position] == ' ' || buffer[position] == '\r')) {
+				position++;
+			}
+
+			if (position < end && buffer[position] != ',') {
+				// not a number: only acceptable for the columns we do not need
+				if (isUsed(column)) {
+					return false;
+				}
+				while (position < end && buffer[position] != ',') {
+					position++;
+				}
+			} else if (digits == 0 && isUsed(column)) {
+				return false;
+			}
+
+			if (negative) {
+				value = -value;
+			}
+
+			if (column == testColumn) {
+				sample.setTest((int) value);
+			} else if (column == startTimeColumn) {
+				sample.setStartTime(value);
+			} else if (column == testTimeColumn) {
+				sample.setTestTime(value);
+			} else if (column == errorsColumn) {
+				sample.setErrors(value);
+			} else if (column == threadColumn) {
+				sample.setThread((int) value);
+			} else if (column == runColumn) {
+				sample.setRun((int) value);
+			}
+
+			position++;
+			column++;
+		}
+
+		return true;
+	}
+
+	private boolean isUsed(final int column) {
+		return column == testColumn || column == startTimeColumn || column == testTimeColumn;
+	}
+}
@@ -0,0 +1,173 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+
+package com.fides;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Read the samples of a Grinder data log one line at a time.
+ *
+ * Lines are scanned directly from a byte buffer, so reading a sample allocates
+ * nothing and the memory used does not depend on the size of the log.
+ */
+public class DataLogReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final InputStream in;
+
+	private final DataLogParser parser;
+
+	private byte[] buffer = new byte[BUFFER_SIZE];
+
+	// first unread byte of the buffer
+	private int start = 0;
+
+	// end of the valid bytes of the buffer
+	private int limit = 0;
+
+	// offset in the stream of the first byte of the buffer
+	private long bufferPosition;
+
+	private boolean endOfStream = false;
+
+	/**
+	 * @param in the data log stream
+	 */
+	public DataLogReader(final InputStream in) {
+		this(in, new DataLogParser(), 0);
+	}
+
+	/**
+	 * @param in the data log stream
+	 * @param parser the parser to use
+	 * @param position the offset in the data log of the first byte of the stream
+	 */
+	public DataLogReader(final InputStream in, final DataLogParser parser, final long position) {
+		this.in = in;
+		this.parser = parser;
+		this.bufferPosition = position;
+	}
+
+	public DataLogParser getParser() {
+		return parser;
+	}
+
+	/**
+	 * @return the offset in the data log just after the last line read
+	 */
+	public long getPosition() {
+		return bufferPosition + start;
+	}
+
+	/**
+	 * Read the next sample, skipping header, blank and malformed lines.
+	 *
+	 * @param sample the sample to fill
+	 *
+	 * @return false at the end of the data log
+	 *
+	 * @throws IOException
+	 */
+	public boolean next(final Sample sample) throws IOException {
+		while (true) {
+			int end = indexOfNewLine(start);
+			while (end < 0) {
+				if (!fill()) {
+					if (start == limit) {
+						return false;
+					}
+					// last line without line terminator
+					end = limit;
+					break;
+				}
+				end = indexOfNewLine(start);
+			}
+
+			final int lineStart = start;
+			final int length = end - lineStart;
+			start = Math.min(end + 1, limit);
+
+			if (DataLogParser.isHeader(buffer, lineStart, length)) {
+				parser.parseHeader(new String(buffer, lineStart, length, "ISO-8859-1").trim());
+			} else if (parser.parse(buffer, lineStart, length, sample)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Read all the remaining samples.
+	 *
+	 * @param listener the listener to notify of every sample
+	 *
+	 * @throws IOException
+	 */
+	public void readAll(final SampleListener listener) throws IOException {
+		final Sample sample = new Sample();
+		while (next(sample)) {
+			listener.sample(sample);
+		}
+	}
+
+	private int indexOfNewLine(final int from) {
+		for (int i = from; i < limit; i++) {
+			if (buffer[i] == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Read more bytes into the buffer, keeping the unread ones.
+	 *
+	 * @return false if the end of the stream has been reached
+	 */
+	private boolean fill() throws IOException {
+		if (endOfStream) {
+			return false;
+		}
+
+		if (start > 0) {
+			System.arraycopy(buffer, start, buffer, 0, limit - start);
+			bufferPosition += start;
+			limit -= start;
+			start = 0;
+		}
+		if (limit == buffer.length) {
+			// a line longer than the buffer
+			final byte[] larger = new byte[buffer.length * 2];
+			System.arraycopy(buffer, 0, larger, 0, limit);
+			buffer = larger;
+		}
+
+		final int read = in.read(buffer, limit, buffer.length - limit);
+		if (read < 0) {
+			endOfStream = true;
+			return false;
+		}
+		limit += read;
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,543 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Exact percentiles of the test times and the slowest tests of a run, computed in bounded memory.
+ *
+ * The test times of the successful tests are buffered as sorted keys of test number and test
+ * time. Once the buffer holding its share of the memory budget is full, it is sorted and spilled
+ * to a run file; the runs are merged at the end, in several passes if there are too many of them
+ * to merge at once within the memory budget. Percentiles are computed by nearest rank.
+ *
+ * Parts created for concurrent readers share the spill directory and divide the memory budget
+ * between them.
+ */
+public class ExactStatistics implements SampleListener {
+
+	// percentiles computed for every test
+	public static final double[] PERCENTILES = { 50, 90, 95, 99, 99.9 };
+
+	// bits of the test time in a key, the test number is in the bits above
+	private static final int TIME_BITS = 40;
+
+	// largest test time of a key
+	private static final long MAX_TIME = (1L << TIME_BITS) - 1;
+
+	// test number of the keys of all the tests, above any test number of a key
+	private static final int TOTAL_TEST = (1 << (63 - TIME_BITS)) - 1;
+
+	// buffer size of a run file read or written
+	private static final int RUN_BUFFER_SIZE = 64 * 1024;
+
+	// smallest number of keys buffered before spilling
+	private static final int MIN_BUFFER_KEYS = 1024;
+
+	// state shared by all the parts
+	private final Spill spill;
+
+	// sorted keys not spilled yet, allocated with the first sample
+	private long[] keys;
+
+	// number of keys buffered
+	private int size;
+
+	// number of successful tests per test number
+	private final Map<Integer, long[]> counts = new TreeMap<Integer, long[]>();
+
+	// the same counts looked up for every sample without boxing the test number
+	private final IntMap<long[]> countIndex = new IntMap<long[]>();
+
+	// slowest tests, the fastest of them first
+	private final PriorityQueue<Sample> slowest;
+
+	// first failure to spill, reported by finish()
+	private IOException failure;
+
+	// percentiles and maximum test time per test number, once finished
+	private Map<Integer, long[]> tests;
+
+	// percentiles and maximum test time of all the tests, once finished
+	private long[] total;
+
+	/**
+	 * @param directory the directory of the run files
+	 * @param memoryBudget the number of bytes the test times may occupy in memory
+	 * @param parts the number of parts that aggregate samples at the same time
+	 * @param slowestCount the number of slowest tests to keep
+	 */
+	public ExactStatistics(final File directory, final long memoryBudget, final int parts, final int slowestCount) {
+		this(new Spill(directory, memoryBudget, Math.max(1, parts), slowestCount));
+	}
+
+	private ExactStatistics(final Spill spill) {
+		this.spill = spill;
+		this.slowest = new PriorityQueue<Sample>(Math.max(1, spill.slowestCount), new Comparator<Sample>() {
+
+			@Override
+			public int compare(final Sample a, final Sample b) {
+				return a.getTestTime() < b.getTestTime() ? -1 : (a.getTestTime() == b.getTestTime() ? 0 : 1);
+			}
+		});
+	}
+
+	/**
+	 * @param size a number of bytes, or followed by one of the units k, m or g
+	 *
+	 * @return the number of bytes
+	 */
+	public static long parseSize(final String size) {
+		final String value = size.trim().toLowerCase(Locale.ENGLISH);
+		try {
+			if (value.endsWith("k")) {
+				return Long.parseLong(value.substring(0, value.length() - 1).trim()) * 1024;
+			} else if (value.endsWith("m")) {
+				return Long.parseLong(value.substring(0, value.length() - 1).trim()) * 1024 * 1024;
+			} else if (value.endsWith("g")) {
+				return Long.parseLong(value.substring(0, value.length() - 1).trim()) * 1024 * 1024 * 1024;
+			}
+			return Long.parseLong(value);
+		} catch (final NumberFormatException e) {
+			throw new ConfigurePluginException("Invalid memory size: " + size);
+		}
+	}
+
+	/**
+	 * @return a new empty part sharing the spill directory and the memory budget
+	 */
+	public ExactStatistics createPart() {
+		return new ExactStatistics(spill);
+	}
+
+	@Override
+	public void sample(final Sample sample) {
+		if (spill.slowestCount > 0 && (slowest.size() < spill.slowestCount
+				|| sample.getTestTime() > slowest.peek().getTestTime())) {
+			if (slowest.size() == spill.slowestCount) {
+				slowest.poll();
+			}
+			slowest.add(copy(sample));
+		}
+
+		if (sample.isError() || failure != null) {
+			return;
+		}
+		if (sample.getTest() < 0 || sample.getTest() >= TOTAL_TEST) {
+			throw new IllegalArgumentException("Test number out of range: " + sample.getTest());
+		}
+
+		getCounter(sample.getTest())[0]++;
+
+		final long time = Math.min(MAX_TIME, Math.max(0, sample.getTestTime()));
+		if (keys == null) {
+			keys = new long[spill.getBufferKeys()];
+		} else if (size + 2 > keys.length) {
+			try {
+				spill(keys, size);
+			} catch (final IOException e) {
+				failure = e;
+				return;
+			}
+			size = 0;
+		}
+		keys[size++] = ((long) sample.getTest() << TIME_BITS) | time;
+		keys[size++] = ((long) TOTAL_TEST << TIME_BITS) | time;
+	}
+
+	private long[] getCounter(final int test) {
+		long[] count = countIndex.get(test);
+		if (count == null) {
+			count = new long[1];
+			counts.put(test, count);
+			countIndex.put(test, count);
+		}
+		return count;
+	}
+
+	/**
+	 * Add the samples of another part, which must not be used afterwards.
+	 *
+	 * @param part the part to add
+	 */
+	public void add(final ExactStatistics part) {
+		if (failure == null) {
+			failure = part.failure;
+		}
+
+		for (final Map.Entry<Integer, long[]> entry : part.counts.entrySet()) {
+			getCounter(entry.getKey())[0] += entry.getValue()[0];
+		}
+
+		for (final Sample sample : part.slowest) {
+			if (slowest.size() < spill.slowestCount) {
+				slowest.add(sample);
+			} else if (sample.getTestTime() > slowest.peek().getTestTime()) {
+				slowest.poll();
+				slowest.add(sample);
+			}
+		}
+
+		if (part.size > 0 && failure == null) {
+			if (keys != null && size + part.size <= keys.length) {
+				System.arraycopy(part.keys, 0, keys, size, part.size);
+				size += part.size;
+			} else {
+				try {
+					spill(part.keys, part.size);
+				} catch (final IOException e) {
+					failure = e;
+				}
+			}
+		}
+		part.keys = null;
+		part.size = 0;
+	}
+
+	/**
+	 * Merge the spilled runs and compute the percentiles, deleting the run files.
+	 *
+	 * @throws IOException if a run file could not be written or read
+	 */
+	public void finish() throws IOException {
+		try {
+			if (failure != null) {
+				throw failure;
+			}
+			if (keys != null) {
+				Arrays.sort(keys, 0, size);
+			}
+
+			final List<File> runs = spill.getRuns();
+			final int fanIn = spill.getFanIn();
+			while (runs.size() > fanIn) {
+				final List<File> merged = new ArrayList<File>(runs.subList(0, fanIn));
+				runs.subList(0, fanIn).clear();
+				runs.add(merge(merged));
+			}
+
+			final PriorityQueue<Cursor> queue = new PriorityQueue<Cursor>(runs.size() + 1);
+			final List<Cursor> cursors = new ArrayList<Cursor>(runs.size() + 1);
+			try {
+				for (final File run : runs) {
+					cursors.add(new RunCursor(run, spill.getMergeBufferSize(runs.size())));
+				}
+				cursors.add(new ArrayCursor(keys, size));
+				for (final Cursor cursor : cursors) {
+					if (cursor.advance()) {
+						queue.add(cursor);
+					}
+				}
+				compute(queue);
+			} finally {
+				for (final Cursor cursor : cursors) {
+					cursor.close();
+				}
+			}
+		} finally {
+			keys = null;
+			size = 0;
+			for (final File run : spill.getRuns()) {
+				run.delete();
+			}
+			spill.getRuns().clear();
+		}
+	}
+
+	/**
+	 * Compute the percentiles of the keys merged in order.
+	 */
+	private void compute(final PriorityQueue<Cursor> queue) throws IOException {
+		long totalCount = 0;
+		for (final long[] count : counts.values()) {
+			totalCount += count[0];
+		}
+
+		tests = new TreeMap<Integer, long[]>();
+		while (!queue.isEmpty()) {
+			final int test = (int) (queue.peek().value >>> TIME_BITS);
+			final long count = test == TOTAL_TEST ? totalCount : counts.get(test)[0];
+
+			final long[] ranks = new long[PERCENTILES.length];
+			for (int p = 0; p < PERCENTILES.length; p++) {
+				ranks[p] = Math.max(1, (long) Math.ceil(PERCENTILES[p] / 100 * count)) - 1;
+			}
+
+			final long[] values = new long[PERCENTILES.length + 1];
+			for (long rank = 0; rank < count; rank++) {
+				final Cursor cursor = queue.poll();
+				final long time = cursor.value & MAX_TIME;
+				for (int p = 0; p < PERCENTILES.length; p++) {
+					if (ranks[p] == rank) {
+						values[p] = time;
+					}
+				}
+				values[PERCENTILES.length] = time;
+				if (cursor.advance()) {
+					queue.add(cursor);
+				}
+			}
+
+			if (test == TOTAL_TEST) {
+				total = values;
+			} else {
+				tests.put(test, values);
+			}
+		}
+	}
+
+	/**
+	 * Merge runs into a new run.
+	 */
+	private File merge(final List<File> runs) throws IOException {
+		final PriorityQueue<Cursor> queue = new PriorityQueue<Cursor>(runs.size());
+		final List<Cursor> cursors = new ArrayList<Cursor>(runs.size());
+		final File merged = spill.createRun();
+		final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(merged), RUN_BUFFER_SIZE));
+		try {
+			for (final File run : runs) {
+				final Cursor cursor = new RunCursor(run, spill.getMergeBufferSize(runs.size()));
+				cursors.add(cursor);
+				if (cursor.advance()) {
+					queue.add(cursor);
+				}
+			}
+			while (!queue.isEmpty()) {
+				final Cursor cursor = queue.poll();
+				out.writeLong(cursor.value);
+				if (cursor.advance()) {
+					queue.add(cursor);
+				}
+			}
+		} finally {
+			out.close();
+			for (final Cursor cursor : cursors) {
+				cursor.close();
+			}
+		}
+		for (final File run : runs) {
+			run.delete();
+		}
+		return merged;
+	}
+
+	/**
+	 * Sort keys and write them to a new run file.
+	 */
+	private void spill(final long[] keys, final int size) throws IOException {
+		Arrays.sort(keys, 0, size);
+		final File run = spill.createRun();
+		final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(run), RUN_BUFFER_SIZE));
+		try {
+			for (int i = 0; i < size; i++) {
+				out.writeLong(keys[i]);
+			}
+		} finally {
+			out.close();
+		}
+		spill.addRun(run);
+	}
+
+	private static Sample copy(final Sample sample) {
+		final Sample copy = new Sample();
+		copy.setProcess(sample.getProcess());
+		copy.setThread(sample.getThread());
+		copy.setRun(sample.getRun());
+		copy.setTest(sample.getTest());
+		copy.setStartTime(sample.getStartTime());
+		copy.setTestTime(sample.getTestTime());
+		copy.setErrors(sample.getErrors());
+		return copy;
+	}
+
+	/**
+	 * @return the percentiles of PERCENTILES followed by the maximum test time per test
+	 * 	number, once finished
+	 */
+	public Map<Integer, long[]> getTests() {
+		return tests;
+	}
+
+	/**
+	 * @return the percentiles of PERCENTILES followed by the maximum test time of all
+	 * 	the tests, or null if there is no successful test
+	 */
+	public long[] getTotal() {
+		return total;
+	}
+
+	/**
+	 * @param test a test number
+	 *
+	 * @return the number of successful tests of the test
+	 */
+	public long getCount(final int test) {
+		final long[] count = counts.get(test);
+		return count != null ? count[0] : 0;
+	}
+
+	/**
+	 * @return the slowest tests, slowest first
+	 */
+	public List<Sample> getSlowest() {
+		final List<Sample> sorted = new ArrayList<Sample>(slowest);
+		Collections.sort(sorted, Collections.reverseOrder(slowest.comparator()));
+		return sorted;
+	}
+
+	/**
+	 * State shared by an instance and its parts.
+	 */
+	private static final class Spill {
+
+		private final File directory;
+
+		private final long memoryBudget;
+
+		private final int parts;
+
+		private final int slowestCount;
+
+		// run files not merged yet
+		private final List<File> runs = new ArrayList<File>();
+
+		Spill(final File directory, final long memoryBudget, final int parts, final int slowestCount) {
+			this.directory = directory;
+			this.memoryBudget = memoryBudget;
+			this.parts = parts;
+			this.slowestCount = slowestCount;
+		}
+
+		int getBufferKeys() {
+			return (int) Math.max(MIN_BUFFER_KEYS, Math.min(Integer.MAX_VALUE - 8, memoryBudget / 8 / parts));
+		}
+
+		int getFanIn() {
+			return (int) Math.max(2, Math.min(1024, memoryBudget / RUN_BUFFER_SIZE));
+		}
+
+		int getMergeBufferSize(final int runCount) {
+			return (int) Math.max(8192, Math.min(RUN_BUFFER_SIZE, memoryBudget / Math.max(1, runCount)));
+		}
+
+		synchronized File createRun() throws IOException {
+			if (!directory.exists()) {
+				directory.mkdirs();
+			}
+			return File.createTempFile("run-", ".bin", directory);
+		}
+
+		synchronized void addRun(final File run) {
+			runs.add(run);
+		}
+
+		List<File> getRuns() {
+			return runs;
+		}
+	}
+
+	/**
+	 * Sorted keys read in order.
+	 */
+	private abstract static class Cursor implements Comparable<Cursor> {
+
+		// current key
+		long value;
+
+		/**
+		 * @return false once all the keys have been read
+		 */
+		abstract boolean advance() throws IOException;
+
+		void close() {
+		}
+
+		@Override
+		public int compareTo(final Cursor other) {
+			return value < other.value ? -1 : (value == other.value ? 0 : 1);
+		}
+	}
+
+	private static final class ArrayCursor extends Cursor {
+
+		private final long[] keys;
+
+		private final int size;
+
+		private int index;
+
+		ArrayCursor(final long[] keys, final int size) {
+			this.keys = keys;
+			this.size = keys != null ? size : 0;
+		}
+
+		@Override
+		boolean advance() {
+			if (index == size) {
+				return false;
+			}
+			value = keys[index++];
+			return true;
+		}
+	}
+
+	private static final class RunCursor extends Cursor {
+
+		private final DataInputStream in;
+
+		RunCursor(final File run, final int bufferSize) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), bufferSize));
+		}
+
+		@Override
+		boolean advance() throws IOException {
+			try {
+				value = in.readLong();
+				return true;
+			} catch (final EOFException e) {
+				return false;
+			}
+		}
+
+		@Override
+		void close() {
+			try {
+				in.close();
+			} catch (final IOException e) {
+				// nothing more to read
+			}
+		}
+	}
+}
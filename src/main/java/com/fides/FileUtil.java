@@ -17,16 +17,30 @@ package com.fides;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.util.jar.JarInputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Provide method to decompress jar files
+ * Provide methods to decompress jar files and manage the extracted files
  *
  * @author Giuseppe Iacono
  */
@@ -34,8 +48,23 @@ public final class FileUtil {
 
 	private static final Logger logger = LoggerFactory.getLogger(FileUtil.class);
 
-	private static final int BUFFER = 1024;
+	private static final int BUFFER = 64 * 1024;
 
+	// upper bound of the threads extracting entries
+	private static final int MAX_EXTRACT_THREADS = 8;
+
+	/**
+	 * Extract a jar file to a directory.
+	 *
+	 * The entries are read through the jar's central directory and extracted
+	 * concurrently. Files already present with the size and timestamp of their
+	 * entry are left untouched.
+	 *
+	 * @param in the jar file path
+	 * @param fOut the destination directory
+	 *
+	 * @throws IOException
+	 */
 	public static void unJarDirectory(final String in, final File fOut) throws IOException {
 		if (!fOut.exists()) {
 			fOut.mkdirs();
@@ -47,46 +76,251 @@ public final class FileUtil {
 			logger.debug("Extracting Grinder Analyzer to " + fOut.getPath() + "...");
 		}
 
-		final JarInputStream jin = new JarInputStream(new FileInputStream(in));
-		final byte[] buffer = new byte[BUFFER];
+		final String root = fOut.getCanonicalPath() + File.separator;
+		final ZipFile jar = new ZipFile(in);
+		final int threads = Math.min(MAX_EXTRACT_THREADS, Runtime.getRuntime().availableProcessors());
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<Void>> extractions = new ArrayList<Future<Void>>();
+			final Enumeration<? extends ZipEntry> entries = jar.entries();
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+				final File file = getEntryFile(fOut, entry);
+				if (!file.getCanonicalPath().startsWith(root) && !file.getCanonicalFile().equals(fOut.getCanonicalFile())) {
+					throw new IOException("Entry " + entry.getName() + " is outside of the destination directory.");
+				}
+
+				if (entry.isDirectory()) {
+					// make sure the directory exists
+					file.mkdirs();
+				} else if (file.length() != entry.getSize() || file.lastModified() != entry.getTime()) {
+					extractions.add(executor.submit(new Callable<Void>() {
 
-		ZipEntry entry = jin.getNextEntry();
-		while (entry != null) {
-			String fileName = entry.getName();
-			if (fileName.charAt(fileName.length() - 1) == '/') {
-				fileName = fileName.substring(0, fileName.length() - 1);
+						@Override
+						public Void call() throws IOException {
+							extract(jar, entry, file);
+							return null;
+						}
+					}));
+				}
 			}
-			if (fileName.charAt(0) == '/') {
-				fileName = fileName.substring(1);
+
+			for (final Future<Void> extraction : extractions) {
+				extraction.get();
 			}
-			if (File.separatorChar != '/') {
-				fileName = fileName.replace('/', File.separatorChar);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while extracting " + in);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
 			}
-			final File file = new File(fOut, fileName);
-			if (entry.isDirectory()) {
-				// make sure the directory exists
-				file.mkdirs();
-				jin.closeEntry();
+			throw new IllegalStateException("Unable to extract " + in, e.getCause());
+		} finally {
+			executor.shutdownNow();
+			jar.close();
+		}
+	}
+
+	private static File getEntryFile(final File fOut, final ZipEntry entry) {
+		String fileName = entry.getName();
+		if (fileName.length() > 0 && fileName.charAt(fileName.length() - 1) == '/') {
+			fileName = fileName.substring(0, fileName.length() - 1);
+		}
+		if (fileName.length() > 0 && fileName.charAt(0) == '/') {
+			fileName = fileName.substring(1);
+		}
+		if (File.separatorChar != '/') {
+			fileName = fileName.replace('/', File.separatorChar);
+		}
+		return new File(fOut, fileName);
+	}
+
+	private static void extract(final ZipFile jar, final ZipEntry entry, final File file) throws IOException {
+		// make sure the directory exists
+		final File parent = file.getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+
+		// dump the file
+		final InputStream in = jar.getInputStream(entry);
+		final FileOutputStream out = new FileOutputStream(file);
+		try {
+			final long size = entry.getSize();
+			if (size >= 0) {
+				final FileChannel channel = out.getChannel();
+				final ReadableByteChannel source = Channels.newChannel(in);
+				long position = 0;
+				while (position < size) {
+					final long transferred = channel.transferFrom(source, position, Math.min(BUFFER, size - position));
+					if (transferred <= 0) {
+						break;
+					}
+					position += transferred;
+				}
 			} else {
-				// make sure the directory exists
-				final File parent = file.getParentFile();
-				if (parent != null && !parent.exists()) {
-					parent.mkdirs();
+				final byte[] buffer = new byte[BUFFER];
+				int len;
+				while ((len = in.read(buffer)) != -1) {
+					out.write(buffer, 0, len);
 				}
+			}
+		} finally {
+			out.close();
+			in.close();
+		}
+		file.setLastModified(entry.getTime());
+	}
 
-				// dump the file
-				final OutputStream out = new FileOutputStream(file);
-				int len = 0;
-				while ((len = jin.read(buffer, 0, buffer.length)) != -1) {
-					out.write(buffer, 0, len);
+	/**
+	 * @param file the file to digest
+	 *
+	 * @return the hexadecimal SHA-1 digest of the file content
+	 *
+	 * @throws IOException
+	 */
+	public static String sha1(final File file) throws IOException {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 is not available.", e);
+		}
+
+		final InputStream in = new FileInputStream(file);
+		try {
+			final byte[] buffer = new byte[64 * 1024];
+			int len;
+			while ((len = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, len);
+			}
+		} finally {
+			in.close();
+		}
+
+		final StringBuilder hex = new StringBuilder();
+		for (final byte b : digest.digest()) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Delete a file or a directory and all its content.
+	 *
+	 * @param file the file or directory to delete
+	 *
+	 * @return true if the file no longer exists
+	 */
+	public static boolean delete(final File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (final File child : children) {
+				delete(child);
+			}
+		}
+		return file.delete() || !file.exists();
+	}
+
+	/**
+	 * Copy a directory tree into another directory. Files already present with the size and
+	 * timestamp of their source are left untouched, the others are transferred by the file
+	 * channels without going through the Java heap.
+	 *
+	 * @param source the source directory
+	 * @param target the destination directory, skipped if it is inside the source directory
+	 *
+	 * @return the number of files copied
+	 *
+	 * @throws IOException
+	 */
+	public static int copyDirectory(final File source, final File target) throws IOException {
+		return copyDirectory(source, target, null);
+	}
+
+	/**
+	 * Copy a directory tree into another directory, except the files and directories at the top
+	 * of the destination directory which are not accepted by a filter.
+	 *
+	 * @param source the source directory
+	 * @param target the destination directory, skipped if it is inside the source directory
+	 * @param filter the filter of the names at the top of the destination directory, may be null
+	 *
+	 * @return the number of files copied
+	 *
+	 * @throws IOException
+	 */
+	public static int copyDirectory(final File source, final File target, final FilenameFilter filter) throws IOException {
+		return copyDirectory(source, target, target.getCanonicalFile(), filter);
+	}
+
+	private static int copyDirectory(final File source, final File target, final File root,
+			final FilenameFilter filter) throws IOException {
+		final File[] children = source.listFiles();
+		if (children == null) {
+			throw new IOException("Unable to list " + source.getPath());
+		}
+		target.mkdirs();
+
+		int copied = 0;
+		for (final File child : children) {
+			if (filter != null && !filter.accept(target, child.getName())) {
+				continue;
+			}
+			final File file = new File(target, child.getName());
+			if (child.isDirectory()) {
+				if (!child.getCanonicalFile().equals(root)) {
+					copied += copyDirectory(child, file, root, null);
+				}
+			} else if (file.length() != child.length() || file.lastModified() != child.lastModified()) {
+				copy(child, file);
+				copied++;
+			}
+		}
+		return copied;
+	}
+
+	private static void copy(final File source, final File target) throws IOException {
+		final FileInputStream in = new FileInputStream(source);
+		try {
+			final FileOutputStream out = new FileOutputStream(target);
+			try {
+				final FileChannel from = in.getChannel();
+				final FileChannel to = out.getChannel();
+				final long size = from.size();
+				long position = 0;
+				while (position < size) {
+					final long transferred = from.transferTo(position, size - position, to);
+					if (transferred <= 0) {
+						break;
+					}
+					position += transferred;
 				}
-				out.flush();
+			} finally {
 				out.close();
-				jin.closeEntry();
-				file.setLastModified(entry.getTime());
 			}
-			entry = jin.getNextEntry();
+		} finally {
+			in.close();
+		}
+		target.setLastModified(source.lastModified());
+	}
+
+	/**
+	 * Rename a file over another one, which is deleted first if the platform cannot
+	 * rename over an existing file.
+	 *
+	 * @param source the file to rename
+	 * @param target the file to replace
+	 *
+	 * @throws IOException if the file cannot be renamed
+	 */
+	public static void replace(final File source, final File target) throws IOException {
+		if (!source.renameTo(target)) {
+			target.delete();
+			if (!source.renameTo(target)) {
+				throw new IOException("Unable to rename " + source.getPath() + " to " + target.getPath());
+			}
 		}
-		jin.close();
 	}
 }
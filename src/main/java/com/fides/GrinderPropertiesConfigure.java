@@ -26,9 +26,17 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.grinder.common.GrinderException;
+import net.grinder.engine.agent.AgentImplementation;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.execution.MavenSession;
@@ -71,12 +79,30 @@ public abstract class GrinderPropertiesConfigure extends AbstractMojo {
 	// local log directory
 	public static final String LOG_DIRECTORY = "target/grinder/log_files";
 
+	// local report directory
+	public static final String REPORT_DIRECTORY = "target/grinder/report";
+
+	// local directory of the temporary files of the report
+	public static final String SPILL_DIRECTORY = "target/grinder/spill";
+
+	// local directory of the columnar copies of the data logs
+	public static final String CACHE_DIRECTORY = "target/grinder/cache";
+
 	// local tcpproxy directory
 	public static final String TCP_PROXY_DIRECTORY = "target/grinder/tcpproxy";
 
+	// expressions replaced by the resource filtering, ${name} or @name@
+	private static final Pattern EXPRESSION_REGEX = Pattern.compile("\\$\\{([^}]+)\\}|@([^@\\s]+)@");
+
 	// grinder properties
 	private Properties propertiesPlugin = new Properties();
 
+	// entries of the worker classpath, in order
+	private final List<String> classPath = new ArrayList<String>();
+
+	// log directory of the run, set by initLogDirectory
+	private File runLogDirectory = null;
+
 	// configuration file
 	private File fileProperties = null;
 
@@ -192,6 +218,24 @@ public abstract class GrinderPropertiesConfigure extends AbstractMojo {
 	 */
 	private boolean filteringEnabled;
 
+	/**
+	 * Give the worker JVMs a manifest-only jar of the configuration directory listing the
+	 * dependencies, rather than the full classpath on their command line. The jar is written
+	 * again only when the dependencies change.
+	 *
+	 * @parameter expression="${grinder.pathingJar}" default-value="true"
+	 */
+	private boolean pathingJar;
+
+	/**
+	 * Share the classes loaded by the worker JVMs through a class data sharing archive of the
+	 * configuration directory, dumped by a training run of one worker thread before the agent
+	 * starts whenever the workers or their classpath change. The workers need JDK 13 or later.
+	 *
+	 * @parameter expression="${grinder.classDataSharing}" default-value="false"
+	 */
+	private boolean classDataSharing;
+
 	public List<Artifact> getPluginArtifacts() {
 		return pluginArtifacts;
 	}
@@ -220,6 +264,18 @@ public abstract class GrinderPropertiesConfigure extends AbstractMojo {
 		return LOG_DIRECTORY;
 	}
 
+	public static String getREPORT_DIRECTORY() {
+		return REPORT_DIRECTORY;
+	}
+
+	public static String getSPILL_DIRECTORY() {
+		return SPILL_DIRECTORY;
+	}
+
+	public static String getCACHE_DIRECTORY() {
+		return CACHE_DIRECTORY;
+	}
+
 	public static String getTCP_PROXY_DIRECTORY() {
 		return TCP_PROXY_DIRECTORY;
 	}
@@ -284,22 +340,35 @@ public abstract class GrinderPropertiesConfigure extends AbstractMojo {
 		this.daemonPeriod = daemonPeriod;
 	}
 
+	/**
+	 * @return the entries of the worker classpath, in order, even when the workers get a pathing jar
+	 */
+	public List<String> getClassPath() {
+		return classPath;
+	}
+
 	public Logger getLogger() {
 		return logger;
 	}
 
+	/**
+	 * @return the dependencies of the workers, the project or else the plug-in dependencies
+	 */
 	@SuppressWarnings("unchecked")
-	private void setAgentJVMArg() {
-		try {
-			final List<Artifact> artifacts = new ArrayList<Artifact>();
+	private List<Artifact> getWorkerArtifacts() {
+		final List<Artifact> artifacts = new ArrayList<Artifact>();
 
-			if(includeProjectDependencies) {
-				artifacts.addAll(mavenProject.getArtifacts());
-			} else {
-				artifacts.addAll(pluginArtifacts);
-			}
+		if(includeProjectDependencies) {
+			artifacts.addAll(mavenProject.getArtifacts());
+		} else {
+			artifacts.addAll(pluginArtifacts);
+		}
+		return artifacts;
+	}
 
-			for (final Artifact a : artifacts) {
+	private void setAgentJVMArg() {
+		try {
+			for (final Artifact a : getWorkerArtifacts()) {
 				if(a.getArtifactId().startsWith("grinder-dcr-agent")) {
 					String agentJarPath;
 					agentJarPath = MavenUtilities.normalizePath(
@@ -310,14 +379,7 @@ public abstract class GrinderPropertiesConfigure extends AbstractMojo {
 									a.getClassifier()));
 
 					// Add the -javaagent JVM argument to the list of JVM arguments, if they already exist.
-					final StringBuilder jvmArgs = new StringBuilder();
-					jvmArgs.append(propertiesPlugin.getProperty("grinder.jvm.arguments", ""));
-					if(jvmArgs.length() > 0) {
-						jvmArgs.append(" ");
-					}
-					jvmArgs.append("-javaagent:");
-					jvmArgs.append(agentJarPath);
-					propertiesPlugin.setProperty("grinder.jvm.arguments", jvmArgs.toString());
+					addAgentJVMArg("-javaagent:" + agentJarPath);
 					break;
 				}
 			}
@@ -334,24 +396,95 @@ public abstract class GrinderPropertiesConfigure extends AbstractMojo {
 		}
 	}
 
-	@SuppressWarnings({ "rawtypes", "unchecked" })
+	/**
+	 * @param argument a JVM argument added to the worker JVM arguments
+	 */
+	private void addAgentJVMArg(final String argument) {
+		final StringBuilder jvmArgs = new StringBuilder();
+		jvmArgs.append(propertiesPlugin.getProperty("grinder.jvm.arguments", ""));
+		if(jvmArgs.length() > 0) {
+			jvmArgs.append(" ");
+		}
+		jvmArgs.append(argument);
+		propertiesPlugin.setProperty("grinder.jvm.arguments", jvmArgs.toString());
+	}
+
+	/**
+	 * Map the class data sharing archive of the workers, after dumping it with a training run
+	 * if the goal starts a run and the archive is missing or out of date.
+	 */
+	private void initClassDataSharing() {
+		if (!classDataSharing || test == null) {
+			return;
+		}
+
+		final ClassDataSharing sharing = new ClassDataSharing(new File(CONFIG), propertiesPlugin, classPath, getAgentClassPath());
+		try {
+			if (!sharing.isValid()) {
+				if (!isNewRun()) {
+					return;
+				}
+				if (sharing.hasFailed()) {
+					logger.warn("The last training for this configuration dumped no class data sharing archive, "
+							+ "delete " + ClassDataSharing.FINGERPRINT_FILE_NAME + " from " + CONFIG + " to train again.");
+					return;
+				}
+				logger.info("Training the class data sharing archive of the workers...");
+				final File training = sharing.prepareTraining(propertiesPlugin, new File(test));
+				if (!sharing.completeTraining(runTrainingAgent(training))) {
+					logger.warn("No class data sharing archive was dumped, the workers need JDK 13 or later.");
+					return;
+				}
+			}
+			addAgentJVMArg(sharing.getJvmArgument());
+		} catch (final IOException e) {
+			logger.warn("Unable to create the class data sharing archive of the workers.", e);
+		}
+
+		if(logger.isDebugEnabled()) {
+			logger.debug("Grinder JVM arguments: " + propertiesPlugin.getProperty("grinder.jvm.arguments"));
+		}
+	}
+
+	/**
+	 * @return the classpath of the JVM running the agents of the goal, which Grinder adds to the
+	 * 	classpath of the workers
+	 */
+	protected String getAgentClassPath() {
+		return System.getProperty("java.class.path");
+	}
+
+	/**
+	 * Run a training agent the way the goal runs its agents, in the Maven JVM by default.
+	 *
+	 * @param properties the Grinder properties file of the agent
+	 *
+	 * @return true if the agent succeeded
+	 */
+	protected boolean runTrainingAgent(final File properties) {
+		try {
+			final AgentImplementation agent = new AgentImplementation(logger, properties, true);
+			agent.run();
+			agent.shutdown();
+			return true;
+		} catch (final GrinderException e) {
+			logger.warn("The class data sharing training agent failed.", e);
+			return false;
+		}
+	}
+
+	@SuppressWarnings("rawtypes")
 	private void setClassPath() {
 		Artifact a = null;
 		final StringBuffer pluginDependencies = new StringBuffer();
 		String grinderJar = null;
+		classPath.clear();
 
-		final List<Artifact> artifacts = new ArrayList<Artifact>();
-
-		if(includeProjectDependencies) {
-			artifacts.addAll(mavenProject.getArtifacts());
-		} else {
-			artifacts.addAll(pluginArtifacts);
-		}
-
-		for (final Iterator i = artifacts.iterator();  i.hasNext();) {
+		for (final Iterator i = getWorkerArtifacts().iterator();  i.hasNext();) {
 			a = (Artifact) i.next();
 
 			grinderJar = MavenUtilities.normalizePath(a.getFile().getPath());
+			classPath.add(grinderJar);
 			pluginDependencies.append(grinderJar);
 			if (i.hasNext()) {
 				pluginDependencies.append(File.pathSeparator);
@@ -359,7 +492,17 @@ public abstract class GrinderPropertiesConfigure extends AbstractMojo {
 		}
 		pluginDependencies.append(File.pathSeparator);
 		pluginDependencies.append(mavenProject.getBuild().getOutputDirectory());
+		classPath.add(mavenProject.getBuild().getOutputDirectory());
 
+		if (pathingJar) {
+			try {
+				final File jar = PathingJar.write(new File(CONFIG), classPath);
+				propertiesPlugin.setProperty(GRINDER_JVM_CLASSPATH, MavenUtilities.normalizePath(jar.getPath()));
+				return;
+			} catch (final IOException e) {
+				logger.warn("Unable to write the pathing jar, listing the worker classpath in full.", e);
+			}
+		}
 		propertiesPlugin.setProperty(GRINDER_JVM_CLASSPATH, pluginDependencies.toString());
 	}
 
@@ -396,6 +539,23 @@ public abstract class GrinderPropertiesConfigure extends AbstractMojo {
 			setPathProperties(path);
 		}
 
+		// reuse the previous configuration if none of its inputs changed
+		final ConfigureCache cache = createConfigureCache();
+		try {
+			if (cache != null && cache.load()
+					&& (!pathingJar || new File(CONFIG, PathingJar.FILE_NAME).exists())) {
+				propertiesPlugin.putAll(cache.getProperties());
+				classPath.clear();
+				classPath.addAll(cache.getClassPath());
+				if(logger.isDebugEnabled()) {
+					logger.debug("--- Grinder properties unchanged since the previous configuration:  " + pathProperties);
+				}
+				return;
+			}
+		} catch (final IOException e) {
+			logger.warn("Unable to read the previous configuration.", e);
+		}
+
 		// load grinder properties from the grinder properties file
 		FileInputStream is = null;
 		try {
@@ -441,11 +601,98 @@ public abstract class GrinderPropertiesConfigure extends AbstractMojo {
 		setAgentJVMArg();
 		setClassPath();
 
+		if (cache != null) {
+			try {
+				cache.save(propertiesPlugin, classPath);
+			} catch (final IOException e) {
+				logger.warn("Unable to save the configuration.", e);
+			}
+		}
+
 		if(logger.isDebugEnabled()) {
 			logger.debug("--- Grinder properties file:  " + pathProperties);
 		}
 	}
 
+	/**
+	 * @return the configuration cache holding the inputs of the Grinder properties, or null if
+	 * 	they cannot be read
+	 */
+	private ConfigureCache createConfigureCache() {
+		final ConfigureCache cache = new ConfigureCache(new File(CONFIG));
+		cache.addInput("analyzerProperties", analyzerProperties);
+		cache.addInput("encoding", encoding);
+		cache.addInput("filteringEnabled", String.valueOf(filteringEnabled));
+		cache.addInput("includeProjectDependencies", String.valueOf(includeProjectDependencies));
+		cache.addInput("pathingJar", String.valueOf(pathingJar));
+		cache.addInput(new File(pathProperties));
+		cache.addInput(new File(System.getProperty("user.home"), ".m2" + File.separator + "settings.xml"));
+		if (properties != null) {
+			cache.addInput(new TreeMap<String, String>(properties));
+		}
+
+		if (filteringEnabled) {
+			// the filtered properties depend on the values of the expressions they use
+			if (mavenProject.getFile() != null) {
+				cache.addInput(mavenProject.getFile());
+			}
+			if (buildFilters != null) {
+				for (final Object filter : buildFilters) {
+					cache.addInput(new File(String.valueOf(filter)));
+				}
+			}
+			// expressions of the pom.xml, settings and filter files are covered by their files
+			try {
+				for (final String expression : getExpressions(new File(pathProperties))) {
+					String value = mavenSession.getExecutionProperties().getProperty(expression);
+					if (value == null) {
+						value = System.getProperty(expression);
+					}
+					if (value == null && expression.startsWith("env.")) {
+						value = System.getenv(expression.substring("env.".length()));
+					}
+					if (value == null) {
+						value = mavenProject.getProperties().getProperty(expression);
+					}
+					cache.addInput(expression, value);
+				}
+			} catch (final IOException e) {
+				if(logger.isDebugEnabled()) {
+					logger.debug("Unable to read " + pathProperties + ", configuring from scratch.", e);
+				}
+				return null;
+			}
+		}
+
+		for (final Artifact a : getWorkerArtifacts()) {
+			cache.addInput(a.getId(), a.getFile() != null ? a.getFile().getPath() : null);
+		}
+		cache.addInput("outputDirectory", mavenProject.getBuild().getOutputDirectory());
+		return cache;
+	}
+
+	/**
+	 * @param file a file to filter
+	 *
+	 * @return the names of the expressions of the file, in order
+	 */
+	private static Set<String> getExpressions(final File file) throws IOException {
+		final Set<String> expressions = new LinkedHashSet<String>();
+		final BufferedReader in = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				final Matcher matcher = EXPRESSION_REGEX.matcher(line);
+				while (matcher.find()) {
+					expressions.add(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+				}
+			}
+		} finally {
+			in.close();
+		}
+		return expressions;
+	}
+
 	/**
 	 * Set test file path to execute
 	 */
@@ -491,7 +738,7 @@ public abstract class GrinderPropertiesConfigure extends AbstractMojo {
 	}
 
 	/**
-	 * Set log directory
+	 * Set log directory, a new run directory for the goals starting a run
 	 */
 	private void initLogDirectory() {
 		// make sure the logDirectory exists
@@ -500,14 +747,30 @@ public abstract class GrinderPropertiesConfigure extends AbstractMojo {
 			logDirectory.mkdirs();
 		}
 
+		runLogDirectory = isNewRun() ? new RunHistory(logDirectory).createRun() : logDirectory;
+
 		// set logDirectory
-		propertiesPlugin.setProperty("grinder.logDirectory", LOG_DIRECTORY);
+		propertiesPlugin.setProperty("grinder.logDirectory", MavenUtilities.normalizePath(runLogDirectory.getPath()));
 
 		if(logger.isDebugEnabled()) {
-			logger.debug("--- Log directory:  " + LOG_DIRECTORY);
+			logger.debug("--- Log directory:  " + runLogDirectory.getPath());
 		}
 	}
 
+	/**
+	 * @return true if the goal starts a run logging to its own run directory
+	 */
+	protected boolean isNewRun() {
+		return false;
+	}
+
+	/**
+	 * @return the log directory of the run of the goal
+	 */
+	public File getRunLogDirectory() {
+		return runLogDirectory != null ? runLogDirectory : new File(LOG_DIRECTORY);
+	}
+
 	/**
 	 * Set agent daemon option and sleep time
 	 */
@@ -543,13 +806,17 @@ public abstract class GrinderPropertiesConfigure extends AbstractMojo {
 			configDirectory.mkdirs();
 		}
 
-		// copy grinder properties to configuration directory
+		// copy grinder properties to configuration directory, unless they are already there
 		final String pathProperties = CONFIG + File.separator + "grinder_agent.properties";
-		BufferedWriter out;
-
 		try {
-			out = new BufferedWriter(new FileWriter(pathProperties));
-			propertiesPlugin.store(out, "Grinder Agent Properties");
+			if (!propertiesPlugin.equals(loadProperties(new File(pathProperties)))) {
+				final BufferedWriter out = new BufferedWriter(new FileWriter(pathProperties));
+				try {
+					propertiesPlugin.store(out, "Grinder Agent Properties");
+				} finally {
+					out.close();
+				}
+			}
 		} catch (final FileNotFoundException e) {
 			logger.error("File " + pathProperties + " does not exists!!!", e);
 		} catch (final IOException e) {
@@ -559,35 +826,27 @@ public abstract class GrinderPropertiesConfigure extends AbstractMojo {
 		// create configuration file
 		fileProperties = new File(pathProperties);
 
-		// copy test file to configuration directory
+		// stage the test script directory in the configuration directory, refreshing the changed files only
+		// and leaving the files written there by the plug-in
 		if (test != null) {
-			String line = null;
-			final String dest_test = CONFIG + File.separator +
-					propertiesPlugin.getProperty("grinder.script");
-			BufferedReader source = null;
-			BufferedWriter dest = null;
-
 			try {
-				source = new BufferedReader(new FileReader(test));
-				dest = new BufferedWriter(new FileWriter(dest_test));
-				line = source.readLine();
-				while (line != null) {
-					dest.write(line + "\n");
-					line = source.readLine();
-				}
-			} catch (final FileNotFoundException e) {
-				logger.error("Test file does not exist.", e);
-			} catch (final IOException e) {
-				logger.error("Test file does not exist.", e);
-			} finally {
-				if (source != null || dest != null) {
-					try {
-						source.close();
-						dest.close();
-					} catch (final IOException e) {
-						logger.error("Unable to close streams.", e);
+				final int copied = FileUtil.copyDirectory(new File(pathTest), configDirectory, new FilenameFilter() {
+					@Override
+					public boolean accept(final File dir, final String name) {
+						if (isGeneratedFile(name)) {
+							if(logger.isDebugEnabled()) {
+								logger.debug("--- Test file not copied over the plug-in one:  " + name);
+							}
+							return false;
+						}
+						return true;
 					}
+				});
+				if(logger.isDebugEnabled()) {
+					logger.debug("--- Test files copied to " + CONFIG + ":  " + copied);
 				}
+			} catch (final IOException e) {
+				logger.error("Unable to copy the test files.", e);
 			}
 		}
 
@@ -596,12 +855,57 @@ public abstract class GrinderPropertiesConfigure extends AbstractMojo {
 		}
 	}
 
+	/**
+	 * @param name the name of a file at the top of the configuration directory
+	 *
+	 * @return true if the file is written by the plug-in
+	 */
+	private boolean isGeneratedFile(final String name) {
+		if (name.startsWith("grinder_") && name.endsWith(".properties")) {
+			// properties of the agents and of the class data sharing training agent
+			return true;
+		}
+		if (filteringEnabled && pathProperties != null && name.endsWith(".properties")
+				&& new File(new File(pathProperties).getParentFile(), name).isFile()) {
+			// properties filtered by filterGrinderPropertiesFile
+			return true;
+		}
+		return name.endsWith(".tmp")
+				|| name.equals(ConfigureCache.FILE_NAME)
+				|| name.equals(PathingJar.FILE_NAME)
+				|| name.equals(PathingJar.LIST_FILE_NAME)
+				|| name.equals(ClassDataSharing.ARCHIVE_FILE_NAME)
+				|| name.equals(ClassDataSharing.FINGERPRINT_FILE_NAME)
+				|| name.equals(ClassDataSharing.TRAINING_DIRECTORY);
+	}
+
+	/**
+	 * @param file a properties file
+	 *
+	 * @return the properties of the file, or null if it does not exist
+	 */
+	private static Properties loadProperties(final File file) throws IOException {
+		if (!file.exists()) {
+			return null;
+		}
+		final Properties loaded = new Properties();
+		final FileInputStream in = new FileInputStream(file);
+		try {
+			loaded.load(in);
+		} finally {
+			in.close();
+		}
+		return loaded;
+	}
+
 	@Override
 	public void execute() throws MojoExecutionException, MojoFailureException {
 		initPropertiesFile();
 
 		initTestFile();
 
+		initClassDataSharing();
+
 		initLogDirectory();
 
 		initAgentOption();
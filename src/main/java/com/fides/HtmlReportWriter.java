@@ -0,0 +1,456 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+
+package com.fides;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Write the statistics of a run as an HTML page.
+ */
+public class HtmlReportWriter {
+
+	// report file name
+	private static final String REPORT_FILE_NAME = "index.html";
+
+	// percentiles of the test times listed for every test
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+	// size of the timeline charts
+	private static final int CHART_WIDTH = 800;
+	private static final int CHART_HEIGHT = 200;
+
+	// colours of the lines of a chart
+	private static final String[] CHART_COLOURS = { "#1f77b4", "#ff7f0e", "#2ca02c", "#d62728" };
+
+	// the descriptions of the tests
+	private final TestIndex tests;
+
+	// maximum number of points of a timeline chart
+	private int timelineMaxPoints = 500;
+
+	// downsample timelines keeping the extremes of every group rather than by LTTB
+	private boolean timelineMinMax = false;
+
+	// seconds between page reloads by the browser, 0 for none
+	private int refreshInterval = 0;
+
+	// exact percentiles and slowest tests, or null
+	private ExactStatistics exactStatistics = null;
+
+	// test time histograms corrected for coordinated omission, or null
+	private OmissionCorrection omissionCorrection = null;
+
+	// start times of the samples of the statistics, or null if they include the whole run
+	private long[] measuredRange = null;
+
+	/**
+	 * @param tests the descriptions of the tests
+	 */
+	public HtmlReportWriter(final TestIndex tests) {
+		this.tests = tests;
+	}
+
+	/**
+	 * @param maxPoints the maximum number of points of a timeline chart
+	 * @param minMax true to keep the lowest and highest window of every group,
+	 * 	false to downsample by Largest-Triangle-Three-Buckets
+	 */
+	public void setTimelineDownsampling(final int maxPoints, final boolean minMax) {
+		this.timelineMaxPoints = maxPoints;
+		this.timelineMinMax = minMax;
+	}
+
+	/**
+	 * @param seconds the number of seconds after which browsers reload the report, 0 for none
+	 */
+	public void setRefreshInterval(final int seconds) {
+		this.refreshInterval = seconds;
+	}
+
+	/**
+	 * @param exactStatistics the finished exact statistics of the run, or null
+	 */
+	public void setExactStatistics(final ExactStatistics exactStatistics) {
+		this.exactStatistics = exactStatistics;
+	}
+
+	/**
+	 * @param omissionCorrection the corrected histograms of the run, or null
+	 */
+	public void setOmissionCorrection(final OmissionCorrection omissionCorrection) {
+		this.omissionCorrection = omissionCorrection;
+	}
+
+	/**
+	 * @param from the earliest start time of the samples of the statistics
+	 * @param to the start time from which samples are excluded from the statistics
+	 */
+	public void setMeasuredRange(final long from, final long to) {
+		this.measuredRange = new long[] { from, to };
+	}
+
+	/**
+	 * Write the report to a temporary file renamed once complete, so that the report can be
+	 * rewritten while it is being viewed.
+	 *
+	 * @param directory the report directory
+	 * @param statistics the statistics of the run
+	 * @param processes the statistics of each worker process by process name, may be empty
+	 * @param timeline the timeline of the run, or null
+	 *
+	 * @return the report file
+	 *
+	 * @throws IOException
+	 */
+	public File write(final File directory, final RunStatistics statistics,
+			final Map<String, RunStatistics> processes, final Timeline timeline) throws IOException {
+		if (!directory.exists()) {
+			directory.mkdirs();
+		}
+
+		final File reportFile = new File(directory, REPORT_FILE_NAME);
+		final File temporary = new File(directory, REPORT_FILE_NAME + ".tmp");
+		final PrintWriter out = new PrintWriter(new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(temporary), "UTF-8")));
+		try {
+			out.println("<!DOCTYPE html>");
+			out.println("<html>");
+			out.println("<head>");
+			out.println("<meta charset=\"UTF-8\">");
+			if (refreshInterval > 0) {
+				out.println("<meta http-equiv=\"refresh\" content=\"" + refreshInterval + "\">");
+			}
+			out.println("<title>Grinder Report</title>");
+			out.println("<style>");
+			out.println("body { font-family: sans-serif; }");
+			out.println("table { border-collapse: collapse; }");
+			out.println("th, td { border: 1px solid #999; padding: 4px 8px; }");
+			out.println("td.number { text-align: right; }");
+			out.println("</style>");
+			out.println("</head>");
+			out.println("<body>");
+			out.println("<h1>Grinder Report</h1>");
+
+			if (measuredRange != null) {
+				final DateFormat dateFormat = DateFormat.getDateTimeInstance();
+				out.println("<p>Statistics of the tests started from " + dateFormat.format(new Date(measuredRange[0]))
+						+ " to " + dateFormat.format(new Date(measuredRange[1]))
+						+ ", the warm-up and the cool-down are only shown in the timeline.</p>");
+			}
+
+			writeRun(out, statistics);
+
+			if (omissionCorrection != null) {
+				writeOmissionCorrection(out, statistics);
+			}
+
+			if (exactStatistics != null) {
+				writeExactStatistics(out, processes);
+			}
+
+			if (timeline != null) {
+				writeTimeline(out, timeline);
+			}
+
+			if (processes.size() > 1) {
+				for (final Map.Entry<String, RunStatistics> process : processes.entrySet()) {
+					out.println("<h2>Process " + escape(process.getKey()) + "</h2>");
+					writeRun(out, process.getValue());
+				}
+			}
+
+			out.println("</body>");
+			out.println("</html>");
+		} finally {
+			out.close();
+		}
+
+		if (out.checkError()) {
+			throw new IOException("Unable to write " + reportFile.getPath());
+		}
+		FileUtil.replace(temporary, reportFile);
+		return reportFile;
+	}
+
+	private void writeRun(final PrintWriter out, final RunStatistics statistics) {
+		final DateFormat dateFormat = DateFormat.getDateTimeInstance();
+
+		out.println("<p>");
+		out.println("Start: " + dateFormat.format(new Date(statistics.getFirstStartTime())) + "<br>");
+		out.println("End: " + dateFormat.format(new Date(statistics.getLastEndTime())) + "<br>");
+		out.println("Duration: " + format(statistics.getDuration() / 1000.0) + " s");
+		out.println("</p>");
+
+		out.println("<table>");
+		out.print("<tr><th>Test</th><th>Description</th><th>Tests</th><th>Errors</th>"
+				+ "<th>Mean Test Time (ms)</th><th>Test Time Standard Deviation (ms)</th>"
+				+ "<th>Min (ms)</th>");
+		for (final double percentile : PERCENTILES) {
+			out.print("<th>" + formatPercentile(percentile) + " (ms)</th>");
+		}
+		out.println("<th>Max (ms)</th><th>TPS</th></tr>");
+
+		for (final Map.Entry<Integer, TestStatistics> entry : statistics.getTests().entrySet()) {
+			final String description = tests.getDescription(entry.getKey());
+			writeRow(out, "Test " + entry.getKey(), description != null ? description : "",
+					statistics, entry.getValue());
+		}
+		writeRow(out, "Totals", "", statistics, statistics.getTotal());
+
+		out.println("</table>");
+	}
+
+	private void writeOmissionCorrection(final PrintWriter out, final RunStatistics statistics) {
+		out.println("<h2>Coordinated Omission Corrected Percentiles</h2>");
+		out.println("<table>");
+		out.print("<tr><th>Test</th><th>Description</th><th>Expected Interval (ms)</th>");
+		for (final double percentile : PERCENTILES) {
+			out.print("<th>" + formatPercentile(percentile) + " raw (ms)</th><th>"
+					+ formatPercentile(percentile) + " corrected (ms)</th>");
+		}
+		out.println("</tr>");
+		for (final Map.Entry<Integer, TestStatistics> entry : statistics.getTests().entrySet()) {
+			final LatencyHistogram corrected = omissionCorrection.getTests().get(entry.getKey());
+			if (corrected == null) {
+				continue;
+			}
+			final String description = tests.getDescription(entry.getKey());
+			writeCorrectedRow(out, "Test " + entry.getKey(), description != null ? description : "",
+					Long.toString(omissionCorrection.getExpectedInterval(entry.getKey())), entry.getValue(), corrected);
+		}
+		writeCorrectedRow(out, "Totals", "", "", statistics.getTotal(), omissionCorrection.getTotal());
+		out.println("</table>");
+	}
+
+	private void writeCorrectedRow(final PrintWriter out, final String name, final String description,
+			final String interval, final TestStatistics raw, final LatencyHistogram corrected) {
+		out.print("<tr><td>" + escape(name) + "</td><td>" + escape(description) + "</td>" + cell(interval));
+		for (final double percentile : PERCENTILES) {
+			out.print(cell(Long.toString(raw.getPercentileTime(percentile))));
+			out.print(cell(Long.toString(corrected.getValueAtPercentile(percentile))));
+		}
+		out.println("</tr>");
+	}
+
+	private void writeExactStatistics(final PrintWriter out, final Map<String, RunStatistics> processes) {
+		out.println("<h2>Exact Percentiles</h2>");
+		out.println("<table>");
+		out.print("<tr><th>Test</th><th>Description</th><th>Successful Tests</th>");
+		for (final double percentile : ExactStatistics.PERCENTILES) {
+			out.print("<th>" + formatPercentile(percentile) + " (ms)</th>");
+		}
+		out.println("<th>Max (ms)</th></tr>");
+		for (final Map.Entry<Integer, long[]> entry : exactStatistics.getTests().entrySet()) {
+			final String description = tests.getDescription(entry.getKey());
+			writeExactRow(out, "Test " + entry.getKey(), description != null ? description : "",
+					exactStatistics.getCount(entry.getKey()), entry.getValue());
+		}
+		if (exactStatistics.getTotal() != null) {
+			long count = 0;
+			for (final Integer test : exactStatistics.getTests().keySet()) {
+				count += exactStatistics.getCount(test);
+			}
+			writeExactRow(out, "Totals", "", count, exactStatistics.getTotal());
+		}
+		out.println("</table>");
+
+		final List<Sample> slowest = exactStatistics.getSlowest();
+		if (slowest.isEmpty()) {
+			return;
+		}
+		final String[] processNames = processes.keySet().toArray(new String[processes.size()]);
+		final DateFormat dateFormat = DateFormat.getDateTimeInstance();
+		out.println("<h2>Slowest Tests</h2>");
+		out.println("<table>");
+		out.println("<tr><th>Test</th><th>Description</th><th>Process</th><th>Thread</th><th>Run</th>"
+				+ "<th>Start</th><th>Test Time (ms)</th><th>Errors</th></tr>");
+		for (final Sample sample : slowest) {
+			final String description = tests.getDescription(sample.getTest());
+			out.print("<tr><td>Test " + sample.getTest() + "</td><td>"
+					+ escape(description != null ? description : "") + "</td>");
+			out.print("<td>" + (sample.getProcess() < processNames.length
+					? escape(processNames[sample.getProcess()]) : "") + "</td>");
+			out.print(cell(Integer.toString(sample.getThread())));
+			out.print(cell(Integer.toString(sample.getRun())));
+			out.print("<td>" + dateFormat.format(new Date(sample.getStartTime())) + "</td>");
+			out.print(cell(Long.toString(sample.getTestTime())));
+			out.print(cell(Long.toString(sample.getErrors())));
+			out.println("</tr>");
+		}
+		out.println("</table>");
+	}
+
+	private void writeExactRow(final PrintWriter out, final String name, final String description,
+			final long count, final long[] values) {
+		out.print("<tr><td>" + escape(name) + "</td><td>" + escape(description) + "</td>");
+		out.print(cell(Long.toString(count)));
+		for (final long value : values) {
+			out.print(cell(Long.toString(value)));
+		}
+		out.println("</tr>");
+	}
+
+	private void writeTimeline(final PrintWriter out, final Timeline timeline) {
+		out.println("<h2>Timeline</h2>");
+		out.println("<p>Window: " + format(timeline.getWindowWidth() / 1000.0) + " s</p>");
+		writeSeries(out, "Totals", timeline.getTotal(), timeline.getWindowWidth());
+		for (final Map.Entry<Integer, Timeline.Series> entry : timeline.getTests().entrySet()) {
+			final String description = tests.getDescription(entry.getKey());
+			writeSeries(out, "Test " + entry.getKey() + (description != null ? " " + description : ""),
+					entry.getValue(), timeline.getWindowWidth());
+		}
+	}
+
+	private void writeSeries(final PrintWriter out, final String name, final Timeline.Series series,
+			final long windowWidth) {
+		final int size = series.size();
+		if (size == 0) {
+			return;
+		}
+
+		final double[] tps = new double[size];
+		final double[] errors = new double[size];
+		final double[] mean = new double[size];
+		final double[][] percentiles = new double[Timeline.PERCENTILES.length][size];
+		for (int i = 0; i < size; i++) {
+			tps[i] = series.getTests(i) * 1000.0 / windowWidth;
+			errors[i] = series.getErrors(i) * 1000.0 / windowWidth;
+			mean[i] = series.getMeanTime(i);
+			for (int p = 0; p < Timeline.PERCENTILES.length; p++) {
+				percentiles[p][i] = series.getPercentileTime(p, i);
+			}
+		}
+
+		out.println("<h3>" + escape(name) + "</h3>");
+
+		writeChart(out, "TPS", series, windowWidth,
+				Timeline.downsample(tps, timelineMaxPoints, timelineMinMax),
+				new String[] { "TPS", "Errors per second" }, new double[][] { tps, errors });
+
+		final String[] names = new String[Timeline.PERCENTILES.length + 1];
+		final double[][] values = new double[Timeline.PERCENTILES.length + 1][];
+		names[0] = "Mean";
+		values[0] = mean;
+		for (int p = 0; p < Timeline.PERCENTILES.length; p++) {
+			names[p + 1] = formatPercentile(Timeline.PERCENTILES[p]);
+			values[p + 1] = percentiles[p];
+		}
+		// downsample on the highest percentile to keep the latency spikes
+		writeChart(out, "Test time (ms)", series, windowWidth,
+				Timeline.downsample(percentiles[Timeline.PERCENTILES.length - 1], timelineMaxPoints, timelineMinMax),
+				names, values);
+	}
+
+	/**
+	 * Write a line chart as inline SVG.
+	 */
+	private void writeChart(final PrintWriter out, final String title, final Timeline.Series series,
+			final long windowWidth, final int[] points, final String[] names, final double[][] values) {
+		double max = 0;
+		for (final double[] line : values) {
+			for (final int i : points) {
+				max = Math.max(max, line[i]);
+			}
+		}
+		if (max == 0) {
+			max = 1;
+		}
+
+		final long start = series.getStartTime(0, windowWidth);
+		final long duration = Math.max(1, series.getStartTime(series.size() - 1, windowWidth) - start);
+
+		out.println("<p>" + escape(title) + " (max " + format(max) + ")<br>");
+		out.println("<svg width=\"" + CHART_WIDTH + "\" height=\"" + CHART_HEIGHT + "\" style=\"border: 1px solid #999\">");
+		for (int l = 0; l < values.length; l++) {
+			final StringBuilder polyline = new StringBuilder();
+			for (final int i : points) {
+				final double x = (series.getStartTime(i, windowWidth) - start) * (CHART_WIDTH - 1.0) / duration;
+				final double y = (CHART_HEIGHT - 1) - values[l][i] * (CHART_HEIGHT - 1) / max;
+				polyline.append(String.format(Locale.ENGLISH, "%.1f,%.1f ", x, y));
+			}
+			out.println("<polyline fill=\"none\" stroke=\"" + CHART_COLOURS[l % CHART_COLOURS.length]
+					+ "\" points=\"" + polyline.toString().trim() + "\"><title>" + escape(names[l]) + "</title></polyline>");
+		}
+		out.println("</svg><br>");
+		for (int l = 0; l < names.length; l++) {
+			out.print("<span style=\"color: " + CHART_COLOURS[l % CHART_COLOURS.length] + "\">&#9632; "
+					+ escape(names[l]) + "</span> ");
+		}
+		out.println("</p>");
+	}
+
+	private void writeRow(final PrintWriter out, final String name, final String description,
+			final RunStatistics run, final TestStatistics statistics) {
+		out.print("<tr><td>" + escape(name) + "</td><td>" + escape(description) + "</td>");
+		out.print(cell(Long.toString(statistics.getTests())));
+		out.print(cell(Long.toString(statistics.getErrors())));
+		out.print(cell(format(statistics.getMeanTime())));
+		out.print(cell(format(statistics.getStandardDeviation())));
+		out.print(cell(Long.toString(statistics.getMinimumTime())));
+		for (final double percentile : PERCENTILES) {
+			out.print(cell(Long.toString(statistics.getPercentileTime(percentile))));
+		}
+		out.print(cell(Long.toString(statistics.getMaximumTime())));
+		out.print(cell(format(run.getTestsPerSecond(statistics))));
+		out.println("</tr>");
+	}
+
+	private static String cell(final String value) {
+		return "<td class=\"number\">" + value + "</td>";
+	}
+
+	private static String formatPercentile(final double percentile) {
+		return (percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile)) + "%";
+	}
+
+	private static String format(final double value) {
+		return String.format(Locale.ENGLISH, "%.2f", value);
+	}
+
+	private static String escape(final String text) {
+		final StringBuilder escaped = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			switch (c) {
+			case '<':
+				escaped.append("&lt;");
+				break;
+			case '>':
+				escaped.append("&gt;");
+				break;
+			case '&':
+				escaped.append("&amp;");
+				break;
+			case '"':
+				escaped.append("&quot;");
+				break;
+			default:
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+}
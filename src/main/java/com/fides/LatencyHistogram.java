@@ -0,0 +1,359 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+
+package com.fides;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Fixed memory histogram of test times, with log-linear buckets in the manner
+ * of HdrHistogram.
+ *
+ * Values are recorded with a relative precision of {@code significantDigits}
+ * decimal digits up to {@code highestTrackableValue}, whatever the number of
+ * samples. Larger values are counted in the last bucket, the exact maximum
+ * being kept apart. Histograms with the same layout are added bucket by bucket,
+ * so results of different processes, agents and runs can be merged without the
+ * raw samples.
+ */
+public class LatencyHistogram implements Serializable {
+
+	private static final long serialVersionUID = 2486018587321570231L;
+
+	// default relative precision, 1%
+	public static final int DEFAULT_SIGNIFICANT_DIGITS = 2;
+
+	// default highest value tracked with full precision, one hour in milliseconds
+	public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = 3600000L;
+
+	// identify the serialized form of a histogram
+	private static final int ENCODING_COOKIE = 0x4C480001;
+
+	private final int significantDigits;
+
+	private final long highestTrackableValue;
+
+	private transient int subBucketHalfCountMagnitude;
+
+	private transient int subBucketHalfCount;
+
+	private transient long subBucketMask;
+
+	private transient int leadingZeroCountBase;
+
+	private transient long[] counts;
+
+	private transient long totalCount;
+
+	private transient long minValue;
+
+	private transient long maxValue;
+
+	public LatencyHistogram() {
+		this(DEFAULT_SIGNIFICANT_DIGITS, DEFAULT_HIGHEST_TRACKABLE_VALUE);
+	}
+
+	/**
+	 * @param significantDigits the number of significant decimal digits, between 1 and 5
+	 * @param highestTrackableValue the highest value recorded with full precision, at least 2
+	 */
+	public LatencyHistogram(final int significantDigits, final long highestTrackableValue) {
+		if (significantDigits < 1 || significantDigits > 5) {
+			throw new IllegalArgumentException("Significant digits must be between 1 and 5");
+		}
+		if (highestTrackableValue < 2) {
+			throw new IllegalArgumentException("Highest trackable value must be at least 2");
+		}
+		this.significantDigits = significantDigits;
+		this.highestTrackableValue = highestTrackableValue;
+		init();
+	}
+
+	private void init() {
+		final long largestValueWithSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+		final int subBucketCountMagnitude = (int) Math.ceil(Math.log(largestValueWithSingleUnitResolution) / Math.log(2));
+		subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+		subBucketHalfCount = 1 << subBucketHalfCountMagnitude;
+		subBucketMask = (1L << subBucketCountMagnitude) - 1;
+		leadingZeroCountBase = 64 - subBucketHalfCountMagnitude - 1;
+
+		long smallestUntrackableValue = 1L << subBucketCountMagnitude;
+		int bucketCount = 1;
+		while (smallestUntrackableValue <= highestTrackableValue) {
+			if (smallestUntrackableValue > Long.MAX_VALUE / 2) {
+				bucketCount++;
+				break;
+			}
+			smallestUntrackableValue <<= 1;
+			bucketCount++;
+		}
+
+		counts = new long[(bucketCount + 1) * subBucketHalfCount];
+		totalCount = 0;
+		minValue = Long.MAX_VALUE;
+		maxValue = 0;
+	}
+
+	public int getSignificantDigits() {
+		return significantDigits;
+	}
+
+	public long getHighestTrackableValue() {
+		return highestTrackableValue;
+	}
+
+	/**
+	 * @param value the value to record, negative values are recorded as 0
+	 */
+	public void recordValue(final long value) {
+		recordValue(value, 1);
+	}
+
+	/**
+	 * @param value the value to record, negative values are recorded as 0
+	 * @param count the number of times to record it
+	 */
+	public void recordValue(final long value, final long count) {
+		final long v = Math.max(0, value);
+		counts[countsIndex(Math.min(v, highestTrackableValue))] += count;
+		totalCount += count;
+		if (v < minValue) {
+			minValue = v;
+		}
+		if (v > maxValue) {
+			maxValue = v;
+		}
+	}
+
+	/**
+	 * Record a value and correct the coordinated omission of a closed loop client: when the value
+	 * exceeds the interval expected between two values, the values that would have been recorded
+	 * meanwhile are recorded too, decreasing by the expected interval down to it.
+	 *
+	 * @param value the value to record, negative values are recorded as 0
+	 * @param expectedInterval the interval expected between two values, 0 for no correction
+	 */
+	public void recordValueWithExpectedInterval(final long value, final long expectedInterval) {
+		recordValue(value, 1);
+		if (expectedInterval <= 0) {
+			return;
+		}
+		for (long missing = value - expectedInterval; missing >= expectedInterval; missing -= expectedInterval) {
+			recordValue(missing, 1);
+		}
+	}
+
+	/**
+	 * Add the values recorded by another histogram.
+	 *
+	 * @param other the histogram to add
+	 */
+	public void add(final LatencyHistogram other) {
+		if (other.totalCount == 0) {
+			return;
+		}
+
+		if (other.significantDigits == significantDigits && other.highestTrackableValue == highestTrackableValue) {
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] += other.counts[i];
+			}
+			totalCount += other.totalCount;
+			minValue = Math.min(minValue, other.minValue);
+			maxValue = Math.max(maxValue, other.maxValue);
+		} else {
+			for (int i = 0; i < other.counts.length; i++) {
+				if (other.counts[i] > 0) {
+					recordValue(other.valueFromIndex(i), other.counts[i]);
+				}
+			}
+			// the bucket values are approximations of the extremes
+			minValue = Math.min(minValue, other.minValue);
+			maxValue = Math.max(maxValue, other.maxValue);
+		}
+	}
+
+	/**
+	 * Remove all the recorded values.
+	 */
+	public void reset() {
+		Arrays.fill(counts, 0);
+		totalCount = 0;
+		minValue = Long.MAX_VALUE;
+		maxValue = 0;
+	}
+
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	public long getMinValue() {
+		return totalCount == 0 ? 0 : minValue;
+	}
+
+	public long getMaxValue() {
+		return maxValue;
+	}
+
+	/**
+	 * @param percentile the percentile, between 0 and 100
+	 *
+	 * @return the highest value equivalent to the value at the percentile, within the
+	 * 	histogram precision, or 0 if no value has been recorded
+	 */
+	public long getValueAtPercentile(final double percentile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+
+		final double p = Math.min(Math.max(percentile, 0), 100);
+		final long countAtPercentile = Math.max(1, (long) Math.ceil(p / 100 * totalCount));
+
+		long total = 0;
+		for (int i = 0; i < counts.length; i++) {
+			total += counts[i];
+			if (total == totalCount) {
+				// the last bucket also counts the values above the highest trackable value
+				return maxValue;
+			}
+			if (total >= countAtPercentile) {
+				return Math.min(highestEquivalentValue(valueFromIndex(i)), maxValue);
+			}
+		}
+		return maxValue;
+	}
+
+	/**
+	 * @param value a value, negative values count as 0
+	 *
+	 * @return the index of the bucket counting the value
+	 */
+	int getBucketIndex(final long value) {
+		return countsIndex(Math.min(Math.max(0, value), highestTrackableValue));
+	}
+
+	/**
+	 * @param index a bucket index
+	 *
+	 * @return the highest value counted by the bucket
+	 */
+	long getBucketValue(final int index) {
+		return highestEquivalentValue(valueFromIndex(index));
+	}
+
+	private int countsIndex(final long value) {
+		final int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+		final int subBucketIndex = (int) (value >>> bucketIndex);
+		return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + (subBucketIndex - subBucketHalfCount);
+	}
+
+	private long valueFromIndex(final int index) {
+		int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+		int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+		if (bucketIndex < 0) {
+			subBucketIndex -= subBucketHalfCount;
+			bucketIndex = 0;
+		}
+		return ((long) subBucketIndex) << bucketIndex;
+	}
+
+	private long highestEquivalentValue(final long value) {
+		final int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+		final long lowestEquivalentValue = (value >>> bucketIndex) << bucketIndex;
+		return lowestEquivalentValue + (1L << bucketIndex) - 1;
+	}
+
+	/**
+	 * Write the histogram in a compact form, only listing the non empty buckets.
+	 *
+	 * @param out the output
+	 *
+	 * @throws IOException
+	 */
+	public void writeTo(final DataOutput out) throws IOException {
+		int buckets = 0;
+		for (final long count : counts) {
+			if (count > 0) {
+				buckets++;
+			}
+		}
+
+		out.writeInt(ENCODING_COOKIE);
+		out.writeInt(significantDigits);
+		out.writeLong(highestTrackableValue);
+		out.writeLong(minValue);
+		out.writeLong(maxValue);
+		out.writeInt(buckets);
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] > 0) {
+				out.writeInt(i);
+				out.writeLong(counts[i]);
+			}
+		}
+	}
+
+	/**
+	 * Read a histogram written by {@link #writeTo(DataOutput)}.
+	 *
+	 * @param in the input
+	 *
+	 * @return the histogram
+	 *
+	 * @throws IOException
+	 */
+	public static LatencyHistogram readFrom(final DataInput in) throws IOException {
+		if (in.readInt() != ENCODING_COOKIE) {
+			throw new IOException("Not a serialized latency histogram.");
+		}
+
+		final LatencyHistogram histogram = new LatencyHistogram(in.readInt(), in.readLong());
+		histogram.readCounts(in);
+		return histogram;
+	}
+
+	private void readCounts(final DataInput in) throws IOException {
+		minValue = in.readLong();
+		maxValue = in.readLong();
+		final int buckets = in.readInt();
+		for (int i = 0; i < buckets; i++) {
+			final int index = in.readInt();
+			final long count = in.readLong();
+			if (index < 0 || index >= counts.length) {
+				throw new IOException("Corrupted latency histogram.");
+			}
+			counts[index] = count;
+			totalCount += count;
+		}
+	}
+
+	private void writeObject(final ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		writeTo(out);
+	}
+
+	private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		init();
+		if (in.readInt() != ENCODING_COOKIE || in.readInt() != significantDigits || in.readLong() != highestTrackableValue) {
+			throw new IOException("Corrupted latency histogram.");
+		}
+		readCounts(in);
+	}
+}
@@ -0,0 +1,235 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Follow the data logs while the agent is running and periodically rewrite a self-refreshing
+ * report and a JSON summary of the cumulative and last interval statistics.
+ *
+ * Only the lines appended since the previous interval are parsed, the data logs are read
+ * without being locked so the worker processes are never blocked.
+ *
+ * @goal report-live
+ */
+public class LiveReport extends Report {
+
+	// name of the live report directory in the report directory
+	private static final String LIVE_DIR = "live";
+
+	// LiveReport logger
+	private final Logger logger = LoggerFactory.getLogger(LiveReport.class);
+
+	/**
+	 * Time between two updates of the live report.
+	 *
+	 * @parameter expression="${grinder.report.liveInterval}" default-value="10s"
+	 */
+	private String liveInterval;
+
+	/**
+	 * Stop following the data logs once nothing has been appended to them for this long.
+	 *
+	 * @parameter expression="${grinder.report.liveIdleTimeout}" default-value="5m"
+	 */
+	private String liveIdleTimeout;
+
+	/**
+	 * Stop following the data logs after this long, 0 to follow them until they are idle.
+	 *
+	 * @parameter expression="${grinder.report.liveDuration}" default-value="0"
+	 */
+	private String liveDuration;
+
+	// run directory of the data logs followed
+	private File runDirectory = null;
+
+	// data logs followed, in process order
+	private final List<File> dataLogs = new ArrayList<File>();
+
+	// offset just after the last line read of each data log
+	private long[] offsets = new long[0];
+
+	// statistics of all the lines read
+	private ReportAggregator aggregator;
+
+	/**
+	 * Constructor
+	 */
+	public LiveReport() {
+		super();
+	}
+
+	@Override
+	public Logger getLogger() {
+		return logger;
+	}
+
+	@Override
+	protected void checkLogDirectory() {
+		// the agent may not have created the logs yet
+		new File(getLOG_DIRECTORY()).mkdirs();
+	}
+
+	@Override
+	protected void createReport() throws MojoExecutionException {
+		final long interval = Timeline.parseDuration(liveInterval);
+		final long idleTimeout = Timeline.parseDuration(liveIdleTimeout);
+		final long duration = Timeline.parseDuration(liveDuration);
+		if (interval <= 0) {
+			throw new ConfigurePluginException("Live report interval must be positive");
+		}
+
+		final File directory = new File(getREPORT_DIRECTORY(), LIVE_DIR);
+		final long started = System.currentTimeMillis();
+		long lastGrowth = started;
+
+		logger.info("Following the data logs of " + getRunLogDirectory().getPath() + ", live report in " + directory.getPath());
+
+		try {
+			while (true) {
+				final long tickStart = System.currentTimeMillis();
+				if (update(directory, interval)) {
+					lastGrowth = tickStart;
+				}
+
+				final long now = System.currentTimeMillis();
+				if (duration > 0 && now - started >= duration) {
+					logger.info("Live report duration elapsed");
+					break;
+				}
+				if (idleTimeout > 0 && now - lastGrowth >= idleTimeout) {
+					logger.info("Data logs idle for " + liveIdleTimeout + ", live report stopped");
+					break;
+				}
+				Thread.sleep(Math.max(0, interval - (now - tickStart)));
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (final IOException e) {
+			throw new MojoExecutionException("Unable to create Grinder live report.", e);
+		}
+	}
+
+	/**
+	 * Read the lines appended to the data logs and rewrite the live report.
+	 *
+	 * @return true if lines were appended since the previous update
+	 */
+	private boolean update(final File directory, final long interval) throws IOException {
+		discoverDataLogs();
+		if (dataLogs.isEmpty()) {
+			return false;
+		}
+
+		final long[] ends = new long[dataLogs.size()];
+		long bytes = 0;
+		for (int i = 0; i < ends.length; i++) {
+			// only complete lines: a worker may be in the middle of writing one
+			ends[i] = Math.max(offsets[i], ChunkedDataLogReader.lastLineEnd(dataLogs.get(i)));
+			bytes += ends[i] - offsets[i];
+		}
+
+		final ReportAggregator last = aggregator.createPart();
+		if (bytes > 0) {
+			new ChunkedDataLogReader(dataLogs, getReportThreads(), ChunkedDataLogReader.DEFAULT_CHUNK_SIZE)
+					.read(last, offsets, ends);
+			last.close();
+			aggregator.add(last);
+			aggregator.close();
+			offsets = ends;
+		}
+
+		if(logger.isDebugEnabled()) {
+			logger.debug("Parsed " + bytes + " bytes appended to " + dataLogs.size() + " data log(s)");
+		}
+
+		final TestIndex tests = getTestIndex();
+		final Map<String, RunStatistics> processes = new LinkedHashMap<String, RunStatistics>();
+		for (int i = 0; i < dataLogs.size(); i++) {
+			processes.put(DataLogMerger.getProcessName(dataLogs.get(i)), aggregator.getProcessStatistics(i));
+		}
+
+		directory.mkdirs();
+		final HtmlReportWriter writer = createReportWriter(tests);
+		writer.setRefreshInterval((int) Math.max(1, interval / 1000));
+		writer.write(directory, aggregator.getStatistics(), processes, aggregator.getTimeline());
+		new SummaryWriter(tests).writeLiveJson(new File(directory, SummaryWriter.JSON_FILE_NAME),
+				aggregator.getStatistics(), last.getStatistics());
+
+		return bytes > 0;
+	}
+
+	/**
+	 * Add the data logs created since the previous update, keeping the statistics of the others.
+	 * The statistics start afresh when a new run directory is created or a data log disappears,
+	 * since the lines read from the logs that are gone cannot be taken out of the timeline.
+	 */
+	private void discoverDataLogs() {
+		final File currentRunDirectory = getRunLogDirectory();
+		final boolean newRun = runDirectory != null && !runDirectory.equals(currentRunDirectory);
+		if (newRun) {
+			logger.info("Following the data logs of the new run " + currentRunDirectory.getPath());
+		}
+
+		final List<File> found = new ArrayList<File>();
+		for (final File dataLog : getLogFiles(DATA_LOG_FILE_REGEX)) {
+			// compressed data logs are complete and cannot be followed
+			if (!LogFiles.isCompressed(dataLog)) {
+				found.add(dataLog);
+			}
+		}
+		final boolean keep = aggregator != null && !newRun && found.containsAll(dataLogs);
+		if (keep && found.size() == dataLogs.size()) {
+			return;
+		}
+
+		final long window = getTimelineWindow();
+		final ReportAggregator grown = new ReportAggregator(found.size(), window > 0 ? new Timeline(window) : null);
+		final long[] grownOffsets = new long[found.size()];
+		if (keep) {
+			if (grown.getTimeline() != null) {
+				grown.getTimeline().add(aggregator.getTimeline());
+			}
+			for (int i = 0; i < dataLogs.size(); i++) {
+				final int process = found.indexOf(dataLogs.get(i));
+				if (process >= 0) {
+					grown.add(process, aggregator.getProcessStatistics(i));
+					grownOffsets[process] = offsets[i];
+				}
+			}
+		}
+
+		if(logger.isDebugEnabled()) {
+			logger.debug("Following " + found.size() + " data log(s)");
+		}
+
+		runDirectory = currentRunDirectory;
+		dataLogs.clear();
+		dataLogs.addAll(found);
+		offsets = grownOffsets;
+		aggregator = grown;
+	}
+}
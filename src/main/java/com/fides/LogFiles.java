@@ -0,0 +1,114 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+
+package com.fides;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Open Grinder log files, plain or compressed with gzip or zstd.
+ *
+ * Reading zstd files requires {@code com.github.luben:zstd-jni} to be added to
+ * the plug-in dependencies.
+ */
+public final class LogFiles {
+
+	// gzip file suffix
+	public static final String GZIP_SUFFIX = ".gz";
+
+	// zstd file suffix
+	public static final String ZSTD_SUFFIX = ".zst";
+
+	// regular expression matching the optional compression suffix of a log file name
+	public static final String COMPRESSION_SUFFIX_REGEX = "(\\.gz|\\.zst)?";
+
+	// zstd decompressing stream, loaded only when a zstd file is read
+	private static final String ZSTD_INPUT_STREAM = "com.github.luben.zstd.ZstdInputStream";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private LogFiles() {
+	}
+
+	/**
+	 * @param file a log file
+	 *
+	 * @return true if the log file is compressed
+	 */
+	public static boolean isCompressed(final File file) {
+		final String name = file.getName();
+		return name.endsWith(GZIP_SUFFIX) || name.endsWith(ZSTD_SUFFIX);
+	}
+
+	/**
+	 * @param file a log file
+	 *
+	 * @return the name of the log file without compression suffix
+	 */
+	public static String getLogName(final File file) {
+		final String name = file.getName();
+		if (name.endsWith(GZIP_SUFFIX)) {
+			return name.substring(0, name.length() - GZIP_SUFFIX.length());
+		} else if (name.endsWith(ZSTD_SUFFIX)) {
+			return name.substring(0, name.length() - ZSTD_SUFFIX.length());
+		}
+		return name;
+	}
+
+	/**
+	 * @param file a log file
+	 *
+	 * @return a stream of the decompressed content of the log file
+	 *
+	 * @throws IOException
+	 */
+	public static InputStream open(final File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			final String name = file.getName();
+			if (name.endsWith(GZIP_SUFFIX)) {
+				return new GZIPInputStream(in, BUFFER_SIZE);
+			} else if (name.endsWith(ZSTD_SUFFIX)) {
+				return openZstd(new BufferedInputStream(in, BUFFER_SIZE));
+			}
+			return in;
+		} catch (final IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	private static InputStream openZstd(final InputStream in) throws IOException {
+		try {
+			final Class<?> zstdInputStream = Class.forName(ZSTD_INPUT_STREAM);
+			return (InputStream) zstdInputStream.getConstructor(InputStream.class).newInstance(in);
+		} catch (final ClassNotFoundException e) {
+			throw new IOException("Reading .zst logs requires com.github.luben:zstd-jni in the plug-in dependencies.");
+		} catch (final InvocationTargetException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException("Unable to decompress zstd log.", e.getCause());
+		} catch (final Exception e) {
+			throw new IllegalStateException("Unable to decompress zstd log.", e);
+		}
+	}
+}
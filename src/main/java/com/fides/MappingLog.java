@@ -0,0 +1,68 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+
+package com.fides;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Read the test descriptions from the final statistics table of a Grinder
+ * process log (the mapping log).
+ */
+public final class MappingLog {
+
+	// A final statistics row: "Test 1   12   0   ...   "Description""
+	private static final Pattern TEST_LINE_REGEX = Pattern.compile("^Test\\s+(\\d+)\\s.*\"(.*)\"\\s*$");
+
+	private MappingLog() {
+	}
+
+	/**
+	 * @param mappingLog the Grinder process log, plain or compressed
+	 *
+	 * @return the test descriptions by test number
+	 *
+	 * @throws IOException
+	 */
+	public static Map<Integer, String> readTestDescriptions(final File mappingLog) throws IOException {
+		final Map<Integer, String> descriptions = new TreeMap<Integer, String>();
+
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(LogFiles.open(mappingLog)));
+		try {
+			String line = reader.readLine();
+			while (line != null) {
+				// only the final statistics rows can match, most lines are skipped without the regex
+				if (line.startsWith("Test")) {
+					final Matcher matcher = TEST_LINE_REGEX.matcher(line);
+					if (matcher.matches()) {
+						descriptions.put(Integer.valueOf(matcher.group(1)), matcher.group(2));
+					}
+				}
+				line = reader.readLine();
+			}
+		} finally {
+			reader.close();
+		}
+
+		return descriptions;
+	}
+}
@@ -129,6 +129,16 @@ public class MavenUtilities {
 		return directory.toString();
 	}
 
+	/**
+	 * @return the directory of the files cached by the plug-in across builds
+	 */
+	public static String getPluginCacheDir() {
+		final StringBuilder directory = new StringBuilder();
+		directory.append(System.getProperty("user.home")).append(File.separator).append(".m2")
+			.append(File.separator).append("grinderplugin");
+		return directory.toString();
+	}
+
 	/**
 	 * Replace special character '\' with the special character '/'.
 	 *
@@ -0,0 +1,120 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Test time histograms corrected for coordinated omission.
+ *
+ * Grinder worker threads wait for a test to end before starting the next one, so the tests
+ * that a stalled server delays are never started and are missing from the data logs. Given the
+ * interval expected between two tests of a worker thread, the tests missed during a long test
+ * are recorded with the test times they would have had.
+ */
+public class OmissionCorrection implements SampleListener {
+
+	// interval expected between two tests of a thread, in milliseconds
+	private final long expectedInterval;
+
+	// intervals of the tests paced differently, by test number
+	private final Map<Integer, Long> testIntervals;
+
+	// corrected histograms of the successful tests by test number
+	private final Map<Integer, LatencyHistogram> tests = new TreeMap<Integer, LatencyHistogram>();
+
+	// the same histograms looked up for every sample without boxing the test number
+	private final IntMap<LatencyHistogram> index = new IntMap<LatencyHistogram>();
+
+	// intervals of the tests paced differently, looked up for every sample
+	private final IntMap<Long> intervalIndex = new IntMap<Long>();
+
+	// corrected histogram of all the successful tests
+	private final LatencyHistogram total = new LatencyHistogram();
+
+	/**
+	 * @param expectedInterval the interval expected between two tests of a thread, in milliseconds
+	 * @param testIntervals the intervals of the tests paced differently, by test number, may be empty
+	 */
+	public OmissionCorrection(final long expectedInterval, final Map<Integer, Long> testIntervals) {
+		this.expectedInterval = expectedInterval;
+		this.testIntervals = Collections.unmodifiableMap(new TreeMap<Integer, Long>(testIntervals));
+		for (final Map.Entry<Integer, Long> entry : testIntervals.entrySet()) {
+			intervalIndex.put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * @return a new empty part with the same intervals
+	 */
+	public OmissionCorrection createPart() {
+		return new OmissionCorrection(expectedInterval, testIntervals);
+	}
+
+	@Override
+	public void sample(final Sample sample) {
+		if (sample.isError()) {
+			return;
+		}
+		final long interval = getExpectedInterval(sample.getTest());
+		getHistogram(sample.getTest()).recordValueWithExpectedInterval(sample.getTestTime(), interval);
+		total.recordValueWithExpectedInterval(sample.getTestTime(), interval);
+	}
+
+	private LatencyHistogram getHistogram(final int test) {
+		LatencyHistogram histogram = index.get(test);
+		if (histogram == null) {
+			histogram = new LatencyHistogram();
+			tests.put(test, histogram);
+			index.put(test, histogram);
+		}
+		return histogram;
+	}
+
+	/**
+	 * Add the histograms of another part.
+	 *
+	 * @param part the part to add
+	 */
+	public void add(final OmissionCorrection part) {
+		for (final Map.Entry<Integer, LatencyHistogram> entry : part.tests.entrySet()) {
+			getHistogram(entry.getKey()).add(entry.getValue());
+		}
+		total.add(part.total);
+	}
+
+	/**
+	 * @param test a test number
+	 *
+	 * @return the interval expected between two tests of a thread, in milliseconds
+	 */
+	public long getExpectedInterval(final int test) {
+		final Long interval = intervalIndex.get(test);
+		return interval != null ? interval.longValue() : expectedInterval;
+	}
+
+	/**
+	 * @return the corrected histograms by test number
+	 */
+	public Map<Integer, LatencyHistogram> getTests() {
+		return tests;
+	}
+
+	public LatencyHistogram getTotal() {
+		return total;
+	}
+}
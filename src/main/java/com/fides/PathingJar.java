@@ -0,0 +1,127 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Manifest-only jar whose Class-Path lists the entries of a classpath, so that a JVM gets a long
+ * classpath from a single short command line argument.
+ *
+ * The entries of the jar are kept in a list file next to it, and the jar is written again only
+ * when the entries change.
+ */
+public final class PathingJar {
+
+	// pathing jar file name
+	public static final String FILE_NAME = "classpath.jar";
+
+	// file name of the entries of the pathing jar, one per line
+	public static final String LIST_FILE_NAME = "classpath.txt";
+
+	private PathingJar() {
+	}
+
+	/**
+	 * @param directory the directory of the pathing jar
+	 * @param classPath the classpath entries, in order
+	 *
+	 * @return the pathing jar listing the entries
+	 *
+	 * @throws IOException
+	 */
+	public static File write(final File directory, final List<String> classPath) throws IOException {
+		final File jar = new File(directory, FILE_NAME);
+		final File list = new File(directory, LIST_FILE_NAME);
+		if (jar.exists() && classPath.equals(readList(list))) {
+			return jar;
+		}
+
+		directory.mkdirs();
+		final StringBuilder entries = new StringBuilder();
+		for (final String entry : classPath) {
+			final File file = new File(entry).getAbsoluteFile();
+			String url = file.toURI().toString();
+			// an entry is a directory unless it is a jar file, even if it does not exist yet
+			if (!file.isFile() && !url.endsWith("/")) {
+				url += "/";
+			}
+			if (entries.length() > 0) {
+				entries.append(' ');
+			}
+			entries.append(url);
+		}
+
+		final Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, entries.toString());
+
+		final File temporary = new File(directory, FILE_NAME + ".tmp");
+		final JarOutputStream out = new JarOutputStream(new FileOutputStream(temporary), manifest);
+		out.close();
+		FileUtil.replace(temporary, jar);
+
+		final File temporaryList = new File(directory, LIST_FILE_NAME + ".tmp");
+		final PrintWriter writer = new PrintWriter(new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(temporaryList), "UTF-8")));
+		try {
+			for (final String entry : classPath) {
+				writer.println(entry);
+			}
+		} finally {
+			writer.close();
+		}
+		if (writer.checkError()) {
+			throw new IOException("Unable to write " + list.getPath());
+		}
+		FileUtil.replace(temporaryList, list);
+		return jar;
+	}
+
+	/**
+	 * @param list a list file
+	 *
+	 * @return the entries of the list file, or null if it does not exist
+	 */
+	private static List<String> readList(final File list) throws IOException {
+		if (!list.exists()) {
+			return null;
+		}
+		final List<String> entries = new ArrayList<String>();
+		final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(list), "UTF-8"));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				entries.add(line);
+			}
+		} finally {
+			in.close();
+		}
+		return entries;
+	}
+}
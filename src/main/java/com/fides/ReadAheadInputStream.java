@@ -0,0 +1,180 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+
+package com.fides;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Read a stream ahead on a background thread, so that decompressing a log
+ * overlaps with parsing it.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+	private static final int BLOCK_SIZE = 256 * 1024;
+
+	// number of blocks read ahead
+	private static final int BLOCKS = 4;
+
+	// marks the end of the stream in the queue
+	private static final Block END = new Block(new byte[0], -1, null);
+
+	private final InputStream in;
+
+	private final BlockingQueue<Block> blocks = new ArrayBlockingQueue<Block>(BLOCKS);
+
+	private final Thread reader;
+
+	// stops the background thread between two blocks
+	private volatile boolean closed = false;
+
+	private Block current = null;
+
+	private int position = 0;
+
+	/**
+	 * @param in the stream to read ahead
+	 * @param name the name of the background thread
+	 */
+	public ReadAheadInputStream(final InputStream in, final String name) {
+		this.in = in;
+		reader = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				readAhead();
+			}
+		}, name);
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	private void readAhead() {
+		try {
+			while (!closed) {
+				final byte[] buffer = new byte[BLOCK_SIZE];
+				int length = 0;
+				int read = 0;
+				while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) != -1) {
+					length += read;
+				}
+				if (length > 0) {
+					blocks.put(new Block(buffer, length, null));
+				}
+				if (read == -1) {
+					blocks.put(END);
+					return;
+				}
+			}
+		} catch (final IOException e) {
+			try {
+				blocks.put(new Block(new byte[0], -1, e));
+			} catch (final InterruptedException interrupted) {
+				// closed
+			}
+		} catch (final InterruptedException e) {
+			// closed
+		}
+	}
+
+	/**
+	 * @return false at the end of the stream
+	 */
+	private boolean nextBlock() throws IOException {
+		if (current != null && current.length < 0) {
+			return false;
+		}
+		if (current == null || position == current.length) {
+			try {
+				current = blocks.take();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while reading ahead.");
+			}
+			position = 0;
+			if (current.exception != null) {
+				throw current.exception;
+			}
+		}
+		return current.length >= 0;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!nextBlock()) {
+			return -1;
+		}
+		return current.buffer[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		if (!nextBlock()) {
+			return -1;
+		}
+		final int read = Math.min(length, current.length - position);
+		System.arraycopy(current.buffer, position, bytes, offset, read);
+		position += read;
+		return read;
+	}
+
+	/**
+	 * Stop the background thread, then close the stream it reads once it is no longer inside
+	 * one of its read calls.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		reader.interrupt();
+		boolean interrupted = false;
+		while (reader.isAlive()) {
+			try {
+				reader.join();
+			} catch (final InterruptedException e) {
+				// the background thread ends after its current read call anyway
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		in.close();
+	}
+
+	/**
+	 * Bytes read ahead.
+	 */
+	private static final class Block {
+
+		private final byte[] buffer;
+
+		// number of bytes, or -1 at the end of the stream
+		private final int length;
+
+		private final IOException exception;
+
+		private Block(final byte[] buffer, final int length, final IOException exception) {
+			this.buffer = buffer;
+			this.length = length;
+			this.exception = exception;
+		}
+	}
+}
@@ -18,8 +18,17 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.regex.Pattern;
 
 import org.apache.maven.artifact.Artifact;
@@ -47,18 +56,185 @@ public class Report extends GrinderPropertiesConfigure {
 	// The name of the analyzer directory found in classpathtool.py in the Grinder Analyzer project.
 	private static final String ANALYZER_DIR = "GrinderAnalyzer";
 
+	// Marker file written once the Grinder Analyzer is completely extracted.
+	private static final String EXTRACTED_MARKER = ".extracted";
+
+	// Marker file written once the Grinder Analyzer modules are compiled.
+	private static final String COMPILED_MARKER = ".compiled";
+
+	// Directory of the plug-in cache holding the compiled copies of the Grinder Analyzer.
+	private static final String COMPILED_ANALYZER_DIR = "analyzer";
+
 	// Grinder Analyzer main Python script file name.
 	private static final String ANALYZER_FILE_NAME = "analyzer.py";
 
 	// Regular expression used to find the Gridner data log file.
-	private static final Pattern DATA_LOG_FILE_REGEX = Pattern.compile(".*-\\d+-data\\.log");
+	protected static final Pattern DATA_LOG_FILE_REGEX = Pattern.compile(".*-\\d+-data\\.log" + LogFiles.COMPRESSION_SUFFIX_REGEX);
 
 	// Regular expression used to find the Grinder mapping log file.
-	private static final Pattern MAPPING_LOG_FILE_REGEX = Pattern.compile(".*-\\d+\\.log");
+	protected static final Pattern MAPPING_LOG_FILE_REGEX = Pattern.compile(".*-\\d+\\.log" + LogFiles.COMPRESSION_SUFFIX_REGEX);
+
+	// Report engine running the Grinder Analyzer Python scripts.
+	private static final String JYTHON_ENGINE = "jython";
+
+	// grinder property of the interval expected between two tests of a worker thread, suffixed
+	// by a test number for the interval of that test
+	private static final String EXPECTED_INTERVAL_PROPERTY = "grinder.report.expectedInterval";
+
+	// timeline window width to detect the steady state when there is no timeline
+	private static final long STEADY_STATE_WINDOW = 10000;
 
 	// Report logger
 	private final Logger logger = LoggerFactory.getLogger(Report.class);
 
+	/**
+	 * Run to report on: a run identifier, the name of its directory in the log directory, or
+	 * "latest". A log directory without run directories is reported on as a single run.
+	 *
+	 * @parameter expression="${grinder.report.run}" default-value="latest"
+	 */
+	private String run;
+
+	/**
+	 * The report engine: "native" parses the logs in Java, "jython" runs the Grinder Analyzer.
+	 *
+	 * @parameter expression="${grinder.report.engine}" default-value="native"
+	 */
+	private String engine;
+
+	/**
+	 * Merge the data logs of every worker process and agent found in the log directory,
+	 * rather than reporting on the first one only.
+	 *
+	 * @parameter expression="${grinder.report.mergeDataLogs}" default-value="true"
+	 */
+	private boolean mergeDataLogs;
+
+	/**
+	 * Parse the data logs in memory mapped chunks on several threads. Otherwise the data
+	 * logs are read sequentially and merged roughly in start time order.
+	 *
+	 * @parameter expression="${grinder.report.parallelParsing}" default-value="true"
+	 */
+	private boolean parallelParsing;
+
+	/**
+	 * Number of threads parsing the data logs, 0 to use one per available processor.
+	 *
+	 * @parameter expression="${grinder.report.threads}" default-value="0"
+	 */
+	private int reportThreads;
+
+	/**
+	 * Save the parse state of the data logs in the log directory and only parse the lines
+	 * appended since the last report.
+	 *
+	 * @parameter expression="${grinder.report.incremental}" default-value="false"
+	 */
+	private boolean incremental;
+
+	/**
+	 * Width of the timeline windows: milliseconds, or a number followed by ms, s, m or h.
+	 * 0 disables the timeline.
+	 *
+	 * @parameter expression="${grinder.report.timelineWindow}" default-value="10s"
+	 */
+	private String timelineWindow;
+
+	/**
+	 * Maximum number of points of every timeline chart; longer timelines are downsampled.
+	 *
+	 * @parameter expression="${grinder.report.timelineMaxPoints}" default-value="500"
+	 */
+	private int timelineMaxPoints;
+
+	/**
+	 * Timeline downsampling: "lttb" (Largest-Triangle-Three-Buckets) or "minmax"
+	 * (lowest and highest window of every group).
+	 *
+	 * @parameter expression="${grinder.report.timelineDownsampling}" default-value="lttb"
+	 */
+	private String timelineDownsampling;
+
+	/**
+	 * Compute exact percentiles and the slowest tests, spilling sorted test times to
+	 * SPILL_DIRECTORY once they exceed the memory budget.
+	 *
+	 * @parameter expression="${grinder.report.exactStatistics}" default-value="false"
+	 */
+	private boolean exactStatistics;
+
+	/**
+	 * Memory budget of the exact statistics test times: bytes, or a number followed by k, m or g.
+	 *
+	 * @parameter expression="${grinder.report.memoryBudget}" default-value="64m"
+	 */
+	private String memoryBudget;
+
+	/**
+	 * Number of slowest tests listed with the exact statistics.
+	 *
+	 * @parameter expression="${grinder.report.slowestTests}" default-value="10"
+	 */
+	private int slowestTests;
+
+	/**
+	 * Warm-up excluded from the statistics but not from the timeline: milliseconds, or a number
+	 * followed by ms, s, m or h from the start of the run.
+	 *
+	 * @parameter expression="${grinder.report.warmUp}" default-value="0"
+	 */
+	private String warmUp;
+
+	/**
+	 * Cool-down excluded from the statistics but not from the timeline: milliseconds, or a number
+	 * followed by ms, s, m or h before the end of the run.
+	 *
+	 * @parameter expression="${grinder.report.coolDown}" default-value="0"
+	 */
+	private String coolDown;
+
+	/**
+	 * Exclude the warm-up and the cool-down detected from the throughput of the run instead of
+	 * warmUp and coolDown. The data logs are read twice.
+	 *
+	 * @parameter expression="${grinder.report.detectSteadyState}" default-value="false"
+	 */
+	private boolean detectSteadyState;
+
+	/**
+	 * Interval expected between two tests of a worker thread to correct the percentiles for
+	 * coordinated omission: milliseconds, or a number followed by ms, s, m or h. Defaults to the
+	 * grinder.report.expectedInterval grinder property; grinder.report.expectedInterval.N
+	 * properties set the interval of test N. No correction when none is set.
+	 *
+	 * @parameter expression="${grinder.report.expectedInterval}"
+	 */
+	private String expectedInterval;
+
+	/**
+	 * Convert the data logs once to columnar binary files in CACHE_DIRECTORY and read these
+	 * files instead of parsing the data logs again, as long as the data logs are unchanged.
+	 *
+	 * @parameter expression="${grinder.report.columnarCache}" default-value="false"
+	 */
+	private boolean columnarCache;
+
+	/**
+	 * Comma separated formats of the statistics exported next to the HTML report: "json"
+	 * for summary.json, "csv" for tests.csv and timeline.csv. Empty to export nothing.
+	 *
+	 * @parameter expression="${grinder.report.export}" default-value="json,csv"
+	 */
+	private String export;
+
+	// statistics of the last native report, null until one is created
+	private RunStatistics runStatistics = null;
+
+	// test descriptions of the mapping logs, and the names, sizes and dates of the logs read
+	private TestIndex testIndex = null;
+	private String testIndexFingerprint = null;
+
 	/**
 	 * Constructor
 	 */
@@ -75,19 +251,50 @@ public class Report extends GrinderPropertiesConfigure {
 		return logger;
 	}
 
+	/**
+	 * @return the directory of the run reported on
+	 */
+	@Override
+	public File getRunLogDirectory() {
+		return getRunHistory().getRunDirectory(run);
+	}
+
+	/**
+	 * @return the runs of the log directory
+	 */
+	protected RunHistory getRunHistory() {
+		return new RunHistory(new File(getLOG_DIRECTORY()));
+	}
+
+	/**
+	 * @return the statistics of the run computed by the native report engine, or
+	 * 	{@code null} if no native report has been created
+	 */
+	protected RunStatistics getRunStatistics() {
+		return runStatistics;
+	}
+
+	/**
+	 * @return true if the report is created by the Grinder Analyzer Python scripts
+	 */
+	protected boolean isJythonEngine() {
+		return JYTHON_ENGINE.equals(engine);
+	}
+
 	/**
 	 * Create HTML reports of LOG_DIRECTORY's file
 	 */
 	private void jythonInterpreter() throws MojoExecutionException {
 		try {
-			final String currentDir = getCurrentDir();
-			final String analyzerPyFile = currentDir + File.separator + ANALYZER_FILE_NAME;
-
-			// create cache directory
+			// create cache directory, kept across builds so that jar packages are scanned once
 			final Properties propertiesJython = new Properties();
-			propertiesJython.put("python.cachedir",System.getProperty("java.io.tmpdir"));
+			propertiesJython.put("python.cachedir", getJythonCacheDir());
+			propertiesJython.put("python.cachedir.skip", "false");
 			PythonInterpreter.initialize(System.getProperties(),propertiesJython, new String[0] );
 
+			final String currentDir = getCompiledDir(getCurrentDir());
+			final String analyzerPyFile = currentDir + File.separator + ANALYZER_FILE_NAME;
+
 			// Add some additional variables to the MDC for use in the Python scripts.
 			MDC.put("current.dir", new PyString(currentDir));
 			if(getAnalyzerProperties() != null) {
@@ -102,7 +309,13 @@ public class Report extends GrinderPropertiesConfigure {
 			sys.argv.append(new PyString("1"));	// 1 agent
 
 			// Add the Maven dependencies to the Python path so that the modules can be used by the scripts.
-			for(final String dependency : getPropertiesPlugin().getProperty(GRINDER_JVM_CLASSPATH).split(File.pathSeparator)) {
+			final Set<String> dependencies = new LinkedHashSet<String>();
+			for(final String dependency : getClassPath()) {
+				if (new File(dependency).exists()) {
+					dependencies.add(dependency);
+				}
+			}
+			for(final String dependency : dependencies) {
 				sys.path.append(new PyString(dependency));
 			}
 
@@ -116,34 +329,371 @@ public class Report extends GrinderPropertiesConfigure {
 		}
 	}
 
+	/**
+	 * Create the HTML report of LOG_DIRECTORY's files, streaming the data logs in constant memory.
+	 */
+	private void nativeReport() throws MojoExecutionException {
+		final List<File> dataLogs = getLogFiles(DATA_LOG_FILE_REGEX);
+		if (dataLogs.isEmpty()) {
+			throw new MojoExecutionException("No data log found in " + getRunLogDirectory().getPath());
+		}
+		if (!mergeDataLogs) {
+			dataLogs.subList(1, dataLogs.size()).clear();
+		}
+
+		try {
+			final long window = getTimelineWindow();
+			final ExactStatistics exact = exactStatistics ? new ExactStatistics(new File(getSPILL_DIRECTORY()),
+					ExactStatistics.parseSize(memoryBudget), parallelParsing ? getReportThreads() : 1, slowestTests) : null;
+			final OmissionCorrection correction = createOmissionCorrection();
+			final ReportAggregator aggregator = new ReportAggregator(dataLogs.size(),
+					window > 0 ? new Timeline(window) : null, exact, correction);
+			final long[] measured = getMeasuredRange(dataLogs);
+			if (measured != null) {
+				aggregator.setMeasuredRange(measured[0], measured[1]);
+			}
+			final boolean allSamples = exact != null || correction != null || measured != null;
+			if (incremental && allSamples) {
+				logger.warn("Exact statistics, corrected percentiles and excluded samples need all the samples,"
+						+ " the data logs are parsed again");
+			}
+			if (incremental && !allSamples) {
+				incrementalRead(dataLogs, aggregator);
+			} else {
+				read(dataLogs, aggregator);
+			}
+			aggregator.close();
+			if (exact != null) {
+				exact.finish();
+			}
+
+			final Map<String, RunStatistics> processes = new LinkedHashMap<String, RunStatistics>();
+			for (int i = 0; i < dataLogs.size(); i++) {
+				processes.put(DataLogMerger.getProcessName(dataLogs.get(i)), aggregator.getProcessStatistics(i));
+			}
+
+			final TestIndex tests = getTestIndex();
+
+			runStatistics = aggregator.getStatistics();
+
+			final RunHistory history = getRunHistory();
+			final String runId = history.getRunId(getRunLogDirectory());
+			if (runId != null) {
+				history.record(runId, runStatistics);
+			}
+
+			final HtmlReportWriter writer = createReportWriter(tests);
+			writer.setExactStatistics(exact);
+			writer.setOmissionCorrection(correction);
+			if (measured != null) {
+				writer.setMeasuredRange(measured[0], measured[1]);
+			}
+			final File reportFile = writer.write(
+					new File(getREPORT_DIRECTORY()), aggregator.getStatistics(), processes, aggregator.getTimeline());
+			logger.info("Grinder report of " + dataLogs.size() + " data log(s) written to " + reportFile.getPath());
+
+			final SummaryWriter summaryWriter = new SummaryWriter(tests);
+			summaryWriter.setExactStatistics(exact);
+			summaryWriter.setOmissionCorrection(correction);
+			final Set<String> formats = getExportFormats();
+			if (formats.contains("json")) {
+				summaryWriter.writeJson(new File(getREPORT_DIRECTORY()), aggregator.getStatistics(), aggregator.getTimeline());
+			}
+			if (formats.contains("csv")) {
+				summaryWriter.writeTestsCsv(new File(getREPORT_DIRECTORY()), aggregator.getStatistics());
+				if (aggregator.getTimeline() != null) {
+					summaryWriter.writeTimelineCsv(new File(getREPORT_DIRECTORY()), aggregator.getTimeline());
+				}
+			}
+		} catch (final IOException e) {
+			throw new MojoExecutionException("Unable to create Grinder report.", e);
+		}
+	}
+
+	/**
+	 * @return the formats of the exported statistics, in lower case
+	 */
+	private Set<String> getExportFormats() {
+		final Set<String> formats = new LinkedHashSet<String>();
+		if (export != null) {
+			for (final String format : export.split(",")) {
+				if (format.trim().length() > 0) {
+					formats.add(format.trim().toLowerCase(Locale.ENGLISH));
+				}
+			}
+		}
+		return formats;
+	}
+
+	/**
+	 * @return the width of the timeline windows in milliseconds, 0 for no timeline
+	 */
+	protected long getTimelineWindow() {
+		return timelineWindow != null ? Timeline.parseDuration(timelineWindow) : 0;
+	}
+
+	/**
+	 * @param tests the descriptions of the tests
+	 *
+	 * @return a report writer configured with the report parameters
+	 */
+	protected HtmlReportWriter createReportWriter(final TestIndex tests) {
+		final HtmlReportWriter writer = new HtmlReportWriter(tests);
+		writer.setTimelineDownsampling(timelineMaxPoints, "minmax".equalsIgnoreCase(timelineDownsampling));
+		return writer;
+	}
+
+	/**
+	 * The mapping logs are parsed again only when one of them has changed since the previous call.
+	 *
+	 * @return the descriptions of the tests of all the mapping logs
+	 */
+	protected TestIndex getTestIndex() throws IOException {
+		final List<File> mappingLogs = getLogFiles(MAPPING_LOG_FILE_REGEX);
+		final StringBuilder fingerprint = new StringBuilder();
+		for (final File mappingLog : mappingLogs) {
+			fingerprint.append(mappingLog.getPath()).append(':').append(mappingLog.length())
+					.append(':').append(mappingLog.lastModified()).append('\n');
+		}
+
+		if (testIndex == null || !fingerprint.toString().equals(testIndexFingerprint)) {
+			testIndex = TestIndex.read(mappingLogs);
+			testIndexFingerprint = fingerprint.toString();
+			if(logger.isDebugEnabled()) {
+				logger.debug("Read " + testIndex.size() + " test description(s) from " + mappingLogs.size() + " mapping log(s)");
+			}
+		}
+		return testIndex;
+	}
+
+	/**
+	 * @return the coordinated omission correction of the expected intervals configured, or null if there is none
+	 */
+	private OmissionCorrection createOmissionCorrection() {
+		final Properties properties = getPropertiesPlugin();
+		final String interval = expectedInterval != null
+				? expectedInterval : properties.getProperty(EXPECTED_INTERVAL_PROPERTY);
+
+		final Map<Integer, Long> testIntervals = new TreeMap<Integer, Long>();
+		for (final String name : properties.stringPropertyNames()) {
+			if (name.startsWith(EXPECTED_INTERVAL_PROPERTY + ".")) {
+				try {
+					testIntervals.put(Integer.valueOf(name.substring(EXPECTED_INTERVAL_PROPERTY.length() + 1)),
+							Timeline.parseDuration(properties.getProperty(name)));
+				} catch (final NumberFormatException e) {
+					throw new ConfigurePluginException("Invalid test number in property " + name);
+				}
+			}
+		}
+
+		final long defaultInterval = interval != null ? Timeline.parseDuration(interval) : 0;
+		if (defaultInterval <= 0 && testIntervals.isEmpty()) {
+			return null;
+		}
+		return new OmissionCorrection(defaultInterval, testIntervals);
+	}
+
+	/**
+	 * Read all the samples of the data logs with the configured reader.
+	 */
+	private void read(final List<File> dataLogs, final ReportAggregator aggregator) throws IOException {
+		if (columnarCache) {
+			readColumnarCache(dataLogs, aggregator);
+		} else if (parallelParsing) {
+			new ChunkedDataLogReader(dataLogs, getReportThreads(), ChunkedDataLogReader.DEFAULT_CHUNK_SIZE).read(aggregator);
+		} else {
+			new DataLogMerger(dataLogs).merge(aggregator);
+		}
+	}
+
+	/**
+	 * @return the start times of the first sample included in the statistics and of the first
+	 * 	sample excluded again, or null to include all the samples
+	 */
+	private long[] getMeasuredRange(final List<File> dataLogs) throws IOException {
+		if (detectSteadyState) {
+			final long window = getTimelineWindow();
+			final ReportAggregator detection = new ReportAggregator(dataLogs.size(),
+					new Timeline(window > 0 ? window : STEADY_STATE_WINDOW));
+			read(dataLogs, detection);
+			detection.close();
+			final long[] range = SteadyState.detect(detection.getTimeline());
+			if (range == null) {
+				logger.warn("No steady state detected, the statistics include the whole run");
+			} else {
+				logger.info("Steady state detected from " + new Date(range[0]) + " to " + new Date(range[1]));
+			}
+			return range;
+		}
+
+		final long warmUpTime = warmUp != null ? Timeline.parseDuration(warmUp) : 0;
+		final long coolDownTime = coolDown != null ? Timeline.parseDuration(coolDown) : 0;
+		if (warmUpTime <= 0 && coolDownTime <= 0) {
+			return null;
+		}
+		final long[] run = SteadyState.getRunRange(dataLogs);
+		if (run == null) {
+			return null;
+		}
+		final long[] range = { run[0] + warmUpTime, run[1] - coolDownTime };
+		if (range[0] >= range[1]) {
+			throw new ConfigurePluginException("Warm-up and cool-down exclude the whole run");
+		}
+		return range;
+	}
+
+	/**
+	 * Read the columnar copies of the data logs, converting the data logs without a valid one.
+	 */
+	private void readColumnarCache(final List<File> dataLogs, final ReportAggregator aggregator) throws IOException {
+		final String runId = getRunHistory().getRunId(getRunLogDirectory());
+		final File directory = runId != null ? new File(getCACHE_DIRECTORY(), runId) : new File(getCACHE_DIRECTORY());
+		final List<File> caches = new ArrayList<File>(dataLogs.size());
+		for (final File dataLog : dataLogs) {
+			final File cache = ColumnarCache.getCacheFile(directory, dataLog);
+			if (!ColumnarCache.isValid(cache, dataLog)) {
+				if(logger.isDebugEnabled()) {
+					logger.debug("Converting " + dataLog.getPath() + " to " + cache.getPath());
+				}
+				ColumnarCache.convert(dataLog, cache);
+			}
+			caches.add(cache);
+		}
+		new ColumnarCache(caches, parallelParsing ? getReportThreads() : 1).read(aggregator);
+	}
+
+	/**
+	 * Read the lines appended to the data logs since the last checkpoint, adding the
+	 * statistics saved by the checkpoint, and save the new checkpoint.
+	 */
+	private void incrementalRead(final List<File> dataLogs, final ReportAggregator aggregator) throws IOException {
+		final File checkpointFile = new File(getRunLogDirectory(), ReportCheckpoint.FILE_NAME);
+
+		ReportCheckpoint checkpoint;
+		try {
+			checkpoint = ReportCheckpoint.load(checkpointFile);
+		} catch (final IOException e) {
+			logger.warn("Ignoring unreadable report checkpoint " + checkpointFile.getPath(), e);
+			checkpoint = new ReportCheckpoint();
+		}
+
+		// the timeline covers all the data logs: start again if any of them has been replaced
+		final Timeline timeline = aggregator.getTimeline();
+		final Timeline savedTimeline = checkpoint.getTimeline();
+		if (!checkpoint.isValid(dataLogs) || (timeline != null && (savedTimeline == null
+				|| savedTimeline.getWindowWidth() != timeline.getWindowWidth()))) {
+			checkpoint = new ReportCheckpoint();
+		} else if (timeline != null) {
+			timeline.add(savedTimeline);
+		}
+
+		final long[] starts = new long[dataLogs.size()];
+		final long[] ends = new long[dataLogs.size()];
+		long bytes = 0;
+		for (int i = 0; i < dataLogs.size(); i++) {
+			final File dataLog = dataLogs.get(i);
+			final ReportCheckpoint.Entry entry = checkpoint.get(dataLog);
+			if (entry != null) {
+				starts[i] = entry.getOffset();
+				aggregator.add(i, entry.getStatistics());
+			}
+			ends[i] = ChunkedDataLogReader.lastLineEnd(dataLog);
+			bytes += ends[i] - starts[i];
+		}
+
+		if(logger.isDebugEnabled()) {
+			logger.debug("Parsing " + bytes + " bytes appended to the data logs since the last report");
+		}
+
+		final int threads = parallelParsing ? getReportThreads() : 1;
+		new ChunkedDataLogReader(dataLogs, threads, ChunkedDataLogReader.DEFAULT_CHUNK_SIZE).read(aggregator, starts, ends);
+
+		for (int i = 0; i < dataLogs.size(); i++) {
+			checkpoint.put(dataLogs.get(i), ends[i], aggregator.getProcessStatistics(i));
+		}
+		checkpoint.setTimeline(timeline);
+		checkpoint.save(checkpointFile);
+	}
+
+	/**
+	 * @return the number of threads parsing the data logs
+	 */
+	protected int getReportThreads() {
+		return reportThreads > 0 ? reportThreads : Runtime.getRuntime().availableProcessors();
+	}
+
 	/**
 	 * Finds the log file from the log directory using the provided regular expression.
+	 * Compressed log files are ignored, the Grinder Analyzer cannot read them.
 	 * @param pattern A regular expression used to find a log file.
 	 * @return The matching log file path or an empty string if no match could be found.
 	 */
 	private String getLogFile(final Pattern pattern) {
-		final File logDirectory = new File(getLOG_DIRECTORY());
-		final File[] logFiles = logDirectory.listFiles(new FilenameFilter() {
+		for (final File logFile : getLogFiles(pattern)) {
+			if (!LogFiles.isCompressed(logFile)) {
+				return logFile.getPath();
+			}
+		}
+		return "";
+	}
 
-			@Override
-			public boolean accept(final File dir, final String name) {
-				return pattern.matcher(name).matches();
+	/**
+	 * Finds all the log files from the log directory and its agent subdirectories matching the
+	 * provided regular expression. A log kept both uncompressed and compressed, as happens when
+	 * logs are archived, is only read once from its uncompressed file.
+	 * @param pattern A regular expression used to find log files.
+	 * @return The matching log files, ordered by directory then name.
+	 */
+	protected List<File> getLogFiles(final Pattern pattern) {
+		final List<File> files = new ArrayList<File>();
+		for (final File logDirectory : RunHistory.getLogDirectories(getRunLogDirectory())) {
+			final File[] logFiles = logDirectory.listFiles(new FilenameFilter() {
+
+				@Override
+				public boolean accept(final File dir, final String name) {
+					return pattern.matcher(name).matches();
+				}
+			});
+			if (logFiles != null) {
+				Arrays.sort(logFiles);
+				final Map<String, File> logs = new LinkedHashMap<String, File>();
+				for (final File logFile : logFiles) {
+					final String name = LogFiles.getLogName(logFile);
+					final File other = logs.get(name);
+					if (other == null || (LogFiles.isCompressed(other) && !LogFiles.isCompressed(logFile))) {
+						logs.put(name, logFile);
+					}
+					if (other != null && logger.isDebugEnabled()) {
+						logger.debug("Both " + other.getName() + " and " + logFile.getName() + " found in "
+								+ logDirectory.getPath() + ", reading " + logs.get(name).getName() + " only.");
+					}
+				}
+				files.addAll(logs.values());
 			}
-		});
-		return logFiles.length > 0 ? logFiles[0].getPath() : "";
+		}
+		return files;
 	}
 
 	/**
-	 * Returns the absolute path to the Grinder Analyzer dependency resolved by Maven.
-	 * @return The absolute path to the Grinder Analyzer dependency or {@code null}
-	 * 	if the dependency cannot be found.
+	 * @return the Jython cache directory of the Grinder Analyzer version in use
 	 */
-	private String getAnalyzerPath() {
+	private String getJythonCacheDir() {
+		final Artifact analyzer = getAnalyzerArtifact();
+		final String version = analyzer != null ? analyzer.getVersion() : "unknown";
+		final File cacheDir = new File(MavenUtilities.getPluginCacheDir() + File.separator + "jython", version);
+		cacheDir.mkdirs();
+		return cacheDir.getPath();
+	}
+
+	/**
+	 * @return the Grinder Analyzer dependency resolved by Maven, or {@code null} if it cannot be found
+	 */
+	private Artifact getAnalyzerArtifact() {
 		final List<Artifact> artifacts = getPluginArtifacts();
 
 		for(final Artifact artifact : artifacts) {
 			if(ANALYZER_ARTIFACT_ID.equals(artifact.getArtifactId())) {
-				return MavenUtilities.normalizePath(artifact.getFile().getPath());
+				return artifact;
 			}
 		}
 
@@ -151,6 +701,19 @@ public class Report extends GrinderPropertiesConfigure {
 	}
 
 	/**
+	 * Returns the absolute path to the Grinder Analyzer dependency resolved by Maven.
+	 * @return The absolute path to the Grinder Analyzer dependency or {@code null}
+	 * 	if the dependency cannot be found.
+	 */
+	private String getAnalyzerPath() {
+		final Artifact analyzer = getAnalyzerArtifact();
+		return analyzer != null ? MavenUtilities.normalizePath(analyzer.getFile().getPath()) : null;
+	}
+
+	/**
+	 * Extracts the Grinder Analyzer once per analyzer jar content: the extraction directory
+	 * is named after the jar's SHA-1 and reused if it is already present and complete.
+	 *
 	 * @return the absolute path of unjar directory
 	 */
 	private String getCurrentDir() throws FileNotFoundException {
@@ -161,44 +724,126 @@ public class Report extends GrinderPropertiesConfigure {
 		}
 
 		if(pathToAnalyzer != null) {
-			final String directory = MavenUtilities.getCurrentDir() + File.separator + ANALYZER_DIR;
+			final File cacheDirectory;
+			try {
+				cacheDirectory = new File(MavenUtilities.getCurrentDir(), FileUtil.sha1(new File(pathToAnalyzer)));
+				if (!new File(cacheDirectory, EXTRACTED_MARKER).exists()) {
+					extractAnalyzer(pathToAnalyzer, cacheDirectory);
+				}
+			} catch (final IOException e) {
+				throw new FileNotFoundException("Could not extract Grinder analyzer: " + e.getMessage());
+			}
 
-			final File jar_directory = new File(directory);
+			final File jar_directory = new File(cacheDirectory, ANALYZER_DIR);
 
-			// Delete the last unjar directory
-			if (jar_directory.exists()){
-				jar_directory.delete();
+			if(logger.isDebugEnabled()) {
+				logger.debug("unjar: {}", jar_directory);
 			}
 
-			// make sure the jar_directory exists
-			if (jar_directory != null) {
-				jar_directory.mkdirs();
+			return jar_directory.getPath();
+		} else {
+			throw new FileNotFoundException("Could not extract Grinder analyzer:  dependency not found!");
+		}
+	}
+
+	/**
+	 * Compiles a copy of the extracted Grinder Analyzer modules once, in a private temporary
+	 * directory of the plug-in cache renamed when complete, so that the shared extraction is
+	 * never modified and concurrent builds never see a partial compilation.
+	 *
+	 * @param currentDir the extracted Grinder Analyzer directory
+	 *
+	 * @return the compiled Grinder Analyzer directory, or the extracted one if it cannot be compiled
+	 */
+	private String getCompiledDir(final String currentDir) {
+		final File extracted = new File(currentDir).getParentFile();
+		final File compiled = new File(MavenUtilities.getPluginCacheDir() + File.separator + COMPILED_ANALYZER_DIR,
+				extracted.getName());
+		if (!new File(compiled, COMPILED_MARKER).exists()) {
+			try {
+				final File temporary = createTemporaryDirectory(compiled);
+				try {
+					FileUtil.copyDirectory(new File(currentDir), new File(temporary, ANALYZER_DIR));
+					new PythonInterpreter(null, new PySystemState()).exec("import compileall\ncompileall.compile_dir(r'"
+							+ new File(temporary, ANALYZER_DIR).getPath() + "', quiet=1)");
+					publish(temporary, compiled, COMPILED_MARKER);
+				} finally {
+					if (temporary.exists()) {
+						FileUtil.delete(temporary);
+					}
+				}
+			} catch (final IOException e) {
+				logger.warn("Unable to compile the Grinder Analyzer modules.", e);
+				return currentDir;
 			}
+		}
+		return new File(compiled, ANALYZER_DIR).getPath();
+	}
+
+	/**
+	 * @param cacheDirectory a cache directory
+	 *
+	 * @return a new private temporary directory next to the cache directory
+	 */
+	private static File createTemporaryDirectory(final File cacheDirectory) throws IOException {
+		final File parent = cacheDirectory.getParentFile();
+		parent.mkdirs();
+
+		final File temporary = File.createTempFile(cacheDirectory.getName() + "-", ".tmp", parent);
+		if (!temporary.delete() || !temporary.mkdir()) {
+			throw new IOException("Unable to create " + temporary.getPath());
+		}
+		return temporary;
+	}
 
+	/**
+	 * Mark a complete temporary directory and rename it to its cache directory, unless another
+	 * build has published the same cache directory meanwhile.
+	 */
+	private static void publish(final File temporary, final File cacheDirectory, final String marker) throws IOException {
+		if (!new File(temporary, marker).createNewFile()) {
+			throw new IOException("Unable to mark " + temporary.getPath() + " as complete");
+		}
+
+		if (!temporary.renameTo(cacheDirectory)) {
+			// another build may have published the same directory meanwhile
+			if (!new File(cacheDirectory, marker).exists()) {
+				FileUtil.delete(cacheDirectory);
+				if (!temporary.renameTo(cacheDirectory)) {
+					throw new IOException("Unable to rename " + temporary.getPath() + " to " + cacheDirectory.getPath());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Extracts the Grinder Analyzer to a private temporary directory renamed to the cache
+	 * directory when complete, so that concurrent builds never see a partial extraction.
+	 */
+	private void extractAnalyzer(final String pathToAnalyzer, final File cacheDirectory) throws IOException {
+		final File temporary = createTemporaryDirectory(cacheDirectory);
+		try {
+			final File jar_directory = new File(temporary, ANALYZER_DIR);
+			jar_directory.mkdirs();
 			jar_directory.setExecutable(true);
 			jar_directory.setWritable(true);
 			jar_directory.setReadable(true);
 
-			// extract jarpath file to jar_directory/JYTHON_DIR
-			try {
-				FileUtil.unJarDirectory(pathToAnalyzer, jar_directory);
-			} catch (final IOException e) {
-				logger.error("Unable to delete jython JAR file.", e);
-			}
+			FileUtil.unJarDirectory(pathToAnalyzer, jar_directory);
 
-			if(logger.isDebugEnabled()) {
-				logger.debug("unjar: {}", jar_directory);
+			publish(temporary, cacheDirectory, EXTRACTED_MARKER);
+		} finally {
+			if (temporary.exists()) {
+				FileUtil.delete(temporary);
 			}
-
-			return jar_directory.getPath();
-		} else {
-			throw new FileNotFoundException("Could not extract Grinder analyzer:  dependency not found!");
 		}
 	}
 
-	@Override
-	public void execute() {
-		final File logDir = new File(getLOG_DIRECTORY());
+	/**
+	 * Check that the log directory holds the logs to report on.
+	 */
+	protected void checkLogDirectory() {
+		final File logDir = getRunLogDirectory();
 
 		if (!logDir.exists()) {
 			if(logger.isDebugEnabled()) {
@@ -207,7 +852,7 @@ public class Report extends GrinderPropertiesConfigure {
 				logger.error("|   Configuration ERROR!!!   |");
 				logger.error(" ----------------------------");
 				logger.error("");
-				logger.error(" " + getLOG_DIRECTORY() + " do not exists! ");
+				logger.error(" " + getRunLogDirectory().getPath() + " do not exists! ");
 				logger.error("");
 				logger.error(" Create this directory and copy log files ");
 				logger.error(" or run agent goal before report goal ");
@@ -226,15 +871,31 @@ public class Report extends GrinderPropertiesConfigure {
 				logger.error("");
 				logger.error(" Log directory is empty! ");
 				logger.error("");
-				logger.error(" Copy log files to " + getLOG_DIRECTORY());
+				logger.error(" Copy log files to " + getRunLogDirectory().getPath());
 				logger.error(" or run agent goal before report goal ");
 				System.exit(0);
 			}
 		}
+	}
+
+	/**
+	 * Create the report with the configured engine.
+	 */
+	protected void createReport() throws MojoExecutionException {
+		if (isJythonEngine()) {
+			jythonInterpreter();
+		} else {
+			nativeReport();
+		}
+	}
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		checkLogDirectory();
 
 		try {
 			super.execute();
-			jythonInterpreter();
+			createReport();
 		} catch (final MojoExecutionException e) {
 			logger.error("Failed to execute Grinder Maven goal.", e);
 		} catch (final MojoFailureException e) {
@@ -242,4 +903,3 @@ public class Report extends GrinderPropertiesConfigure {
 		}
 	}
 }
-
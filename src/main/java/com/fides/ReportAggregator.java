@@ -0,0 +1,204 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+
+package com.fides;
+
+/**
+ * Aggregate the samples of the data logs of a run: statistics of the whole run
+ * and of each worker process, and optionally the timeline of the run.
+ */
+public class ReportAggregator implements SampleListener {
+
+	// statistics of all the data logs
+	private final RunStatistics statistics = new RunStatistics();
+
+	// statistics of each data log, by process number
+	private final RunStatistics[] processes;
+
+	// timeline of all the data logs, or null
+	private final Timeline timeline;
+
+	// exact percentiles and slowest tests of all the data logs, or null
+	private final ExactStatistics exactStatistics;
+
+	// test time histograms corrected for coordinated omission, or null
+	private final OmissionCorrection omissionCorrection;
+
+	// start times of the samples aggregated in the statistics, the timeline has all of them
+	private long measuredFrom = Long.MIN_VALUE;
+	private long measuredTo = Long.MAX_VALUE;
+
+	/**
+	 * @param processCount the number of data logs
+	 */
+	public ReportAggregator(final int processCount) {
+		this(processCount, null);
+	}
+
+	/**
+	 * @param processCount the number of data logs
+	 * @param timeline the timeline to fill, or null
+	 */
+	public ReportAggregator(final int processCount, final Timeline timeline) {
+		this(processCount, timeline, null);
+	}
+
+	/**
+	 * @param processCount the number of data logs
+	 * @param timeline the timeline to fill, or null
+	 * @param exactStatistics the exact statistics to compute, or null
+	 */
+	public ReportAggregator(final int processCount, final Timeline timeline, final ExactStatistics exactStatistics) {
+		this(processCount, timeline, exactStatistics, null);
+	}
+
+	/**
+	 * @param processCount the number of data logs
+	 * @param timeline the timeline to fill, or null
+	 * @param exactStatistics the exact statistics to compute, or null
+	 * @param omissionCorrection the corrected histograms to fill, or null
+	 */
+	public ReportAggregator(final int processCount, final Timeline timeline, final ExactStatistics exactStatistics,
+			final OmissionCorrection omissionCorrection) {
+		this.timeline = timeline;
+		this.exactStatistics = exactStatistics;
+		this.omissionCorrection = omissionCorrection;
+		processes = new RunStatistics[processCount];
+		for (int i = 0; i < processCount; i++) {
+			processes[i] = new RunStatistics();
+		}
+	}
+
+	/**
+	 * @return a new empty aggregator with the same configuration, to aggregate
+	 * 	part of the samples and be added to this one afterwards
+	 */
+	public ReportAggregator createPart() {
+		final ReportAggregator part = new ReportAggregator(processes.length,
+				timeline != null ? timeline.createPart() : null,
+				exactStatistics != null ? exactStatistics.createPart() : null,
+				omissionCorrection != null ? omissionCorrection.createPart() : null);
+		part.setMeasuredRange(measuredFrom, measuredTo);
+		return part;
+	}
+
+	/**
+	 * Exclude the samples started outside a range from the statistics, but not from the timeline.
+	 *
+	 * @param from the earliest start time of the samples aggregated, in milliseconds since Epoch
+	 * @param to the start time from which samples are no longer aggregated
+	 */
+	public void setMeasuredRange(final long from, final long to) {
+		this.measuredFrom = from;
+		this.measuredTo = to;
+	}
+
+	@Override
+	public void sample(final Sample sample) {
+		if (timeline != null) {
+			timeline.sample(sample);
+		}
+		if (sample.getStartTime() < measuredFrom || sample.getStartTime() >= measuredTo) {
+			return;
+		}
+		statistics.sample(sample);
+		processes[sample.getProcess()].sample(sample);
+		if (exactStatistics != null) {
+			exactStatistics.sample(sample);
+		}
+		if (omissionCorrection != null) {
+			omissionCorrection.sample(sample);
+		}
+	}
+
+	/**
+	 * Add the samples aggregated by another part.
+	 *
+	 * @param part the aggregator to add
+	 */
+	public void add(final ReportAggregator part) {
+		statistics.add(part.statistics);
+		for (int i = 0; i < processes.length; i++) {
+			processes[i].add(part.processes[i]);
+		}
+		if (timeline != null) {
+			timeline.add(part.timeline);
+		}
+		if (exactStatistics != null) {
+			exactStatistics.add(part.exactStatistics);
+		}
+		if (omissionCorrection != null) {
+			omissionCorrection.add(part.omissionCorrection);
+		}
+	}
+
+	/**
+	 * Complete the aggregation once all the samples have been read.
+	 */
+	public void close() {
+		if (timeline != null) {
+			timeline.close();
+		}
+	}
+
+	/**
+	 * Add statistics already aggregated for a process, for example by a previous report.
+	 *
+	 * @param process the process number
+	 * @param statistics the statistics to add
+	 */
+	public void add(final int process, final RunStatistics statistics) {
+		this.statistics.add(statistics);
+		processes[process].add(statistics);
+	}
+
+	public RunStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * @param process the process number
+	 *
+	 * @return the statistics of the data log of the process
+	 */
+	public RunStatistics getProcessStatistics(final int process) {
+		return processes[process];
+	}
+
+	/**
+	 * @return the timeline of the run, or null if it is not aggregated
+	 */
+	public Timeline getTimeline() {
+		return timeline;
+	}
+
+	/**
+	 * @return the exact statistics of the run, or null if they are not computed
+	 */
+	public ExactStatistics getExactStatistics() {
+		return exactStatistics;
+	}
+
+	/**
+	 * @return the test time histograms corrected for coordinated omission, or null if they are not computed
+	 */
+	public OmissionCorrection getOmissionCorrection() {
+		return omissionCorrection;
+	}
+
+	public int getProcessCount() {
+		return processes.length;
+	}
+}
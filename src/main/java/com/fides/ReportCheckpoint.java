@@ -0,0 +1,239 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+
+package com.fides;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Parse state of the data logs saved by a report, so that the next report only
+ * parses the lines appended since.
+ *
+ * For every data log the checkpoint holds the offset just after the last line
+ * parsed, a checksum of the beginning of the file to detect a log replaced by a
+ * new run, and the statistics aggregated so far. Compressed data logs are only
+ * ever parsed whole, their offset being their file length. The timeline of all the data
+ * logs is saved as well.
+ */
+public class ReportCheckpoint {
+
+	// checkpoint file name, saved in the log directory
+	public static final String FILE_NAME = "report.checkpoint";
+
+	// identify a checkpoint file and its format version
+	private static final int FILE_COOKIE = 0x47524302;
+
+	// number of bytes at the beginning of a data log covered by the checksum
+	private static final int CHECKSUM_SIZE = 4096;
+
+	// entries by data log file name
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+	// timeline of all the data logs, or null
+	private Timeline timeline = null;
+
+	/**
+	 * @param file the checkpoint file
+	 *
+	 * @return the checkpoint saved in the file, or an empty checkpoint if the file does not exist
+	 *
+	 * @throws IOException if the file cannot be read
+	 */
+	public static ReportCheckpoint load(final File file) throws IOException {
+		final ReportCheckpoint checkpoint = new ReportCheckpoint();
+		if (!file.exists()) {
+			return checkpoint;
+		}
+
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != FILE_COOKIE) {
+				throw new IOException("Not a report checkpoint: " + file.getPath());
+			}
+			final int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				final String name = in.readUTF();
+				final long offset = in.readLong();
+				final long checksum = in.readLong();
+				checkpoint.entries.put(name, new Entry(offset, checksum, RunStatistics.readFrom(in)));
+			}
+			if (in.readBoolean()) {
+				checkpoint.timeline = Timeline.readFrom(in);
+			}
+		} finally {
+			in.close();
+		}
+		return checkpoint;
+	}
+
+	/**
+	 * Save the checkpoint, replacing the file only once it is completely written.
+	 *
+	 * @param file the checkpoint file
+	 *
+	 * @throws IOException
+	 */
+	public void save(final File file) throws IOException {
+		final File temporary = new File(file.getPath() + ".tmp");
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+		try {
+			out.writeInt(FILE_COOKIE);
+			out.writeInt(entries.size());
+			for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeLong(entry.getValue().offset);
+				out.writeLong(entry.getValue().checksum);
+				entry.getValue().statistics.writeTo(out);
+			}
+			out.writeBoolean(timeline != null);
+			if (timeline != null) {
+				timeline.writeTo(out);
+			}
+		} finally {
+			out.close();
+		}
+
+		FileUtil.replace(temporary, file);
+	}
+
+	/**
+	 * @param dataLogs the data logs of the run
+	 *
+	 * @return true if every data log saved in the checkpoint is still one of the data
+	 * 	logs and still begins with the content parsed
+	 *
+	 * @throws IOException
+	 */
+	public boolean isValid(final List<File> dataLogs) throws IOException {
+		final Map<String, File> files = new HashMap<String, File>();
+		for (final File dataLog : dataLogs) {
+			files.put(dataLog.getName(), dataLog);
+		}
+		for (final String name : entries.keySet()) {
+			final File dataLog = files.get(name);
+			if (dataLog == null || get(dataLog) == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the timeline of all the data logs up to the checkpoint, or null
+	 */
+	public Timeline getTimeline() {
+		return timeline;
+	}
+
+	public void setTimeline(final Timeline timeline) {
+		this.timeline = timeline;
+	}
+
+	/**
+	 * @param dataLog a data log
+	 *
+	 * @return the entry of the data log, or null if the checkpoint does not cover the
+	 * 	current content of the data log
+	 *
+	 * @throws IOException
+	 */
+	public Entry get(final File dataLog) throws IOException {
+		final Entry entry = entries.get(dataLog.getName());
+		if (entry == null || dataLog.length() < entry.offset
+				|| (LogFiles.isCompressed(dataLog) && dataLog.length() != entry.offset)
+				|| checksum(dataLog, entry.offset) != entry.checksum) {
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * @param dataLog a data log
+	 * @param offset the offset just after the last line parsed
+	 * @param statistics the statistics of the data log up to the offset
+	 *
+	 * @throws IOException
+	 */
+	public void put(final File dataLog, final long offset, final RunStatistics statistics) throws IOException {
+		entries.put(dataLog.getName(), new Entry(offset, checksum(dataLog, offset), statistics));
+	}
+
+	/**
+	 * @return the CRC of the bytes of the data log covered by the checksum
+	 */
+	private static long checksum(final File dataLog, final long offset) throws IOException {
+		final byte[] buffer = new byte[(int) Math.min(CHECKSUM_SIZE, offset)];
+		final InputStream in = new FileInputStream(dataLog);
+		try {
+			int read = 0;
+			while (read < buffer.length) {
+				final int count = in.read(buffer, read, buffer.length - read);
+				if (count < 0) {
+					break;
+				}
+				read += count;
+			}
+			final CRC32 crc = new CRC32();
+			crc.update(buffer, 0, read);
+			return crc.getValue();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Parse state of one data log.
+	 */
+	public static final class Entry {
+
+		private final long offset;
+
+		private final long checksum;
+
+		private final RunStatistics statistics;
+
+		private Entry(final long offset, final long checksum, final RunStatistics statistics) {
+			this.offset = offset;
+			this.checksum = checksum;
+			this.statistics = statistics;
+		}
+
+		/**
+		 * @return the offset just after the last line parsed
+		 */
+		public long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * @return the statistics of the data log up to the offset
+		 */
+		public RunStatistics getStatistics() {
+			return statistics;
+		}
+	}
+}
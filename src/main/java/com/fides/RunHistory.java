@@ -0,0 +1,267 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * The runs of the agent, each one logging to its own timestamped directory of the log directory,
+ * and the index of their key statistics.
+ *
+ * A log directory holding no run directory is a legacy log directory whose logs belong to a
+ * single run. A run started with several agents keeps the logs of each agent in its own
+ * subdirectory of the run directory.
+ */
+public class RunHistory {
+
+	// index file name in the log directory
+	public static final String INDEX_FILE_NAME = "runs.index";
+
+	// statistics file name in a run directory
+	public static final String STATISTICS_FILE_NAME = "statistics.bin";
+
+	// identifier of the most recent run
+	public static final String LATEST = "latest";
+
+	// run identifier: start time, followed by a sequence number for runs started the same second
+	private static final Pattern RUN_ID_REGEX = Pattern.compile("\\d{8}-\\d{6}(-\\d+)?");
+
+	// log subdirectory of an agent of a run started with several agents, followed by the agent number
+	public static final String AGENT_DIRECTORY_PREFIX = "agent-";
+
+	private static final Pattern AGENT_DIRECTORY_REGEX = Pattern.compile(AGENT_DIRECTORY_PREFIX + "\\d+");
+
+	// start time format of the run identifiers
+	private static final String RUN_ID_FORMAT = "yyyyMMdd-HHmmss";
+
+	// orders the run identifiers by start time then sequence number, "-10" after "-2"
+	private static final Comparator<String> RUN_ID_ORDER = new Comparator<String>() {
+		@Override
+		public int compare(final String id1, final String id2) {
+			final int startTimes = getStartTime(id1).compareTo(getStartTime(id2));
+			if (startTimes != 0) {
+				return startTimes;
+			}
+			final int sequence1 = getSequence(id1);
+			final int sequence2 = getSequence(id2);
+			return sequence1 < sequence2 ? -1 : (sequence1 == sequence2 ? 0 : 1);
+		}
+	};
+
+	// header of the index file
+	private static final String INDEX_HEADER =
+			"# Run\tStart\tEnd\tDuration (ms)\tTests\tErrors\tMean (ms)\t50% (ms)\t90% (ms)\t99% (ms)\tTPS";
+
+	private final File directory;
+
+	/**
+	 * @param directory the log directory
+	 */
+	public RunHistory(final File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Create the directory of a new run.
+	 *
+	 * @return the run directory
+	 */
+	public File createRun() {
+		final String id = new SimpleDateFormat(RUN_ID_FORMAT, Locale.ENGLISH).format(new Date());
+		File run = new File(directory, id);
+		for (int sequence = 2; run.exists(); sequence++) {
+			run = new File(directory, id + "-" + sequence);
+		}
+		run.mkdirs();
+		return run;
+	}
+
+	/**
+	 * @return the identifiers of the runs, oldest first
+	 */
+	public List<String> getRunIds() {
+		final List<String> ids = new ArrayList<String>();
+		final String[] names = directory.list();
+		if (names != null) {
+			for (final String name : names) {
+				if (RUN_ID_REGEX.matcher(name).matches() && new File(directory, name).isDirectory()) {
+					ids.add(name);
+				}
+			}
+		}
+		Collections.sort(ids, RUN_ID_ORDER);
+		return ids;
+	}
+
+	private static String getStartTime(final String id) {
+		return id.substring(0, RUN_ID_FORMAT.length());
+	}
+
+	/**
+	 * @return the sequence number of a run identifier, 1 for the first run started in a second
+	 */
+	private static int getSequence(final String id) {
+		return id.length() > RUN_ID_FORMAT.length() ? Integer.parseInt(id.substring(RUN_ID_FORMAT.length() + 1)) : 1;
+	}
+
+	/**
+	 * @param id a run identifier, or LATEST
+	 *
+	 * @return the directory of the run; the log directory itself for LATEST if it holds no run directory
+	 *
+	 * @throws ConfigurePluginException if there is no such run
+	 */
+	public File getRunDirectory(final String id) {
+		final List<String> ids = getRunIds();
+		if (id == null || LATEST.equals(id)) {
+			return ids.isEmpty() ? directory : new File(directory, ids.get(ids.size() - 1));
+		}
+		if (!ids.contains(id)) {
+			throw new ConfigurePluginException("No run " + id + " in " + directory.getPath());
+		}
+		return new File(directory, id);
+	}
+
+	/**
+	 * @param runDirectory a directory returned by getRunDirectory
+	 *
+	 * @return the identifier of the run, or null for a legacy log directory
+	 */
+	public String getRunId(final File runDirectory) {
+		return runDirectory.equals(directory) ? null : runDirectory.getName();
+	}
+
+	/**
+	 * @param runDirectory a run directory
+	 *
+	 * @return the run directory followed by the log subdirectories of its agents, ordered by name
+	 */
+	public static List<File> getLogDirectories(final File runDirectory) {
+		final List<File> directories = new ArrayList<File>();
+		directories.add(runDirectory);
+		final String[] names = runDirectory.list();
+		if (names != null) {
+			Arrays.sort(names);
+			for (final String name : names) {
+				final File directory = new File(runDirectory, name);
+				if (AGENT_DIRECTORY_REGEX.matcher(name).matches() && directory.isDirectory()) {
+					directories.add(directory);
+				}
+			}
+		}
+		return directories;
+	}
+
+	/**
+	 * @param id a run identifier, or LATEST
+	 *
+	 * @return the statistics recorded for the run
+	 *
+	 * @throws IOException if no statistics were recorded for the run
+	 */
+	public RunStatistics loadStatistics(final String id) throws IOException {
+		final File file = new File(getRunDirectory(id), STATISTICS_FILE_NAME);
+		if (!file.exists()) {
+			throw new IOException("No report was created for run " + id);
+		}
+		return RunStatistics.load(file);
+	}
+
+	/**
+	 * Save the statistics of a run in its directory and in the index.
+	 *
+	 * @param id the run identifier
+	 * @param statistics the statistics of the run
+	 *
+	 * @throws IOException
+	 */
+	public void record(final String id, final RunStatistics statistics) throws IOException {
+		statistics.save(new File(new File(directory, id), STATISTICS_FILE_NAME));
+
+		final Map<String, String> index = readIndex();
+		final TestStatistics total = statistics.getTotal();
+		index.put(id, id
+				+ "\t" + statistics.getFirstStartTime()
+				+ "\t" + statistics.getLastEndTime()
+				+ "\t" + statistics.getDuration()
+				+ "\t" + total.getTests()
+				+ "\t" + total.getErrors()
+				+ "\t" + String.format(Locale.ENGLISH, "%.2f", total.getMeanTime())
+				+ "\t" + total.getPercentileTime(50)
+				+ "\t" + total.getPercentileTime(90)
+				+ "\t" + total.getPercentileTime(99)
+				+ "\t" + String.format(Locale.ENGLISH, "%.2f", statistics.getTestsPerSecond(total)));
+
+		final File file = new File(directory, INDEX_FILE_NAME);
+		final File temporary = new File(directory, INDEX_FILE_NAME + ".tmp");
+		final PrintWriter out = new PrintWriter(new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(temporary), "UTF-8")));
+		try {
+			out.println(INDEX_HEADER);
+			for (final String line : index.values()) {
+				out.println(line);
+			}
+		} finally {
+			out.close();
+		}
+		if (out.checkError()) {
+			throw new IOException("Unable to write " + file.getPath());
+		}
+		FileUtil.replace(temporary, file);
+	}
+
+	/**
+	 * @return the lines of the index by run identifier, oldest first
+	 */
+	private Map<String, String> readIndex() throws IOException {
+		final Map<String, String> index = new TreeMap<String, String>(RUN_ID_ORDER);
+		final File file = new File(directory, INDEX_FILE_NAME);
+		if (!file.exists()) {
+			return index;
+		}
+		final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				final int tab = line.indexOf('\t');
+				if (!line.startsWith("#") && tab > 0 && RUN_ID_REGEX.matcher(line.substring(0, tab)).matches()) {
+					index.put(line.substring(0, tab), line);
+				}
+			}
+		} finally {
+			in.close();
+		}
+		return index;
+	}
+}
@@ -0,0 +1,204 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+
+package com.fides;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregate the samples of a run, per test and in total.
+ */
+public class RunStatistics implements SampleListener {
+
+	// identify a statistics file and its format version
+	private static final int FILE_COOKIE = 0x47525301;
+
+	// statistics per test number
+	private final Map<Integer, TestStatistics> tests = new TreeMap<Integer, TestStatistics>();
+
+	// the same statistics looked up for every sample without boxing the test number
+	private final IntMap<TestStatistics> index = new IntMap<TestStatistics>();
+
+	// statistics of all the tests
+	private TestStatistics total = new TestStatistics();
+
+	// earliest test start time in milliseconds since Epoch
+	private long firstStartTime = Long.MAX_VALUE;
+
+	// latest test end time in milliseconds since Epoch
+	private long lastEndTime = Long.MIN_VALUE;
+
+	@Override
+	public void sample(final Sample sample) {
+		getTest(sample.getTest()).record(sample);
+		total.record(sample);
+
+		if (sample.getStartTime() < firstStartTime) {
+			firstStartTime = sample.getStartTime();
+		}
+		if (sample.getEndTime() > lastEndTime) {
+			lastEndTime = sample.getEndTime();
+		}
+	}
+
+	/**
+	 * Add the statistics of another part of the run.
+	 *
+	 * @param other the statistics to add
+	 */
+	public void add(final RunStatistics other) {
+		for (final Map.Entry<Integer, TestStatistics> entry : other.tests.entrySet()) {
+			getTest(entry.getKey()).add(entry.getValue());
+		}
+		total.add(other.total);
+		firstStartTime = Math.min(firstStartTime, other.firstStartTime);
+		lastEndTime = Math.max(lastEndTime, other.lastEndTime);
+	}
+
+	private TestStatistics getTest(final int test) {
+		TestStatistics statistics = index.get(test);
+		if (statistics == null) {
+			statistics = new TestStatistics();
+			tests.put(test, statistics);
+			index.put(test, statistics);
+		}
+		return statistics;
+	}
+
+	/**
+	 * @return the statistics per test number, ordered by test number
+	 */
+	public Map<Integer, TestStatistics> getTests() {
+		return tests;
+	}
+
+	public TestStatistics getTotal() {
+		return total;
+	}
+
+	public long getFirstStartTime() {
+		return isEmpty() ? 0 : firstStartTime;
+	}
+
+	public long getLastEndTime() {
+		return isEmpty() ? 0 : lastEndTime;
+	}
+
+	public boolean isEmpty() {
+		return firstStartTime == Long.MAX_VALUE;
+	}
+
+	/**
+	 * @return the run duration in milliseconds
+	 */
+	public long getDuration() {
+		return getLastEndTime() - getFirstStartTime();
+	}
+
+	/**
+	 * @param statistics statistics of this run
+	 *
+	 * @return the successful tests per second over the whole run
+	 */
+	public double getTestsPerSecond(final TestStatistics statistics) {
+		final long duration = getDuration();
+		return duration <= 0 ? 0 : statistics.getTests() * 1000.0 / duration;
+	}
+
+	/**
+	 * @param out the output
+	 *
+	 * @throws IOException
+	 */
+	public void writeTo(final DataOutput out) throws IOException {
+		out.writeLong(firstStartTime);
+		out.writeLong(lastEndTime);
+		total.writeTo(out);
+		out.writeInt(tests.size());
+		for (final Map.Entry<Integer, TestStatistics> entry : tests.entrySet()) {
+			out.writeInt(entry.getKey());
+			entry.getValue().writeTo(out);
+		}
+	}
+
+	/**
+	 * Read statistics written by {@link #writeTo(DataOutput)}.
+	 *
+	 * @param in the input
+	 *
+	 * @return the statistics
+	 *
+	 * @throws IOException
+	 */
+	public static RunStatistics readFrom(final DataInput in) throws IOException {
+		final RunStatistics statistics = new RunStatistics();
+		statistics.firstStartTime = in.readLong();
+		statistics.lastEndTime = in.readLong();
+		statistics.total = TestStatistics.readFrom(in);
+		final int tests = in.readInt();
+		for (int i = 0; i < tests; i++) {
+			final int test = in.readInt();
+			final TestStatistics testStatistics = TestStatistics.readFrom(in);
+			statistics.tests.put(test, testStatistics);
+			statistics.index.put(test, testStatistics);
+		}
+		return statistics;
+	}
+
+	/**
+	 * @param file the file to save the statistics to
+	 *
+	 * @throws IOException
+	 */
+	public void save(final File file) throws IOException {
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(FILE_COOKIE);
+			writeTo(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @param file a file written by {@link #save(File)}
+	 *
+	 * @return the statistics
+	 *
+	 * @throws IOException
+	 */
+	public static RunStatistics load(final File file) throws IOException {
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != FILE_COOKIE) {
+				throw new IOException("Not a Grinder statistics file: " + file.getPath());
+			}
+			return readFrom(in);
+		} finally {
+			in.close();
+		}
+	}
+}
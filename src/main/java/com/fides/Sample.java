@@ -0,0 +1,112 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+/**
+ * One line of a Grinder data log.
+ *
+ * Instances are mutable and are reused by the readers for every line, so
+ * listeners must copy any value they want to keep.
+ */
+public final class Sample {
+
+	// index of the data log the sample was read from
+	private int process;
+
+	// worker thread number
+	private int thread;
+
+	// run number of the worker thread
+	private int run;
+
+	// test number
+	private int test;
+
+	// test start time in milliseconds since Epoch
+	private long startTime;
+
+	// test time in milliseconds
+	private long testTime;
+
+	// number of errors reported for the test
+	private long errors;
+
+	public int getProcess() {
+		return process;
+	}
+
+	public void setProcess(final int process) {
+		this.process = process;
+	}
+
+	public int getThread() {
+		return thread;
+	}
+
+	public void setThread(final int thread) {
+		this.thread = thread;
+	}
+
+	public int getRun() {
+		return run;
+	}
+
+	public void setRun(final int run) {
+		this.run = run;
+	}
+
+	public int getTest() {
+		return test;
+	}
+
+	public void setTest(final int test) {
+		this.test = test;
+	}
+
+	public long getStartTime() {
+		return startTime;
+	}
+
+	public void setStartTime(final long startTime) {
+		this.startTime = startTime;
+	}
+
+	public long getTestTime() {
+		return testTime;
+	}
+
+	public void setTestTime(final long testTime) {
+		this.testTime = testTime;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	public void setErrors(final long errors) {
+		this.errors = errors;
+	}
+
+	public boolean isError() {
+		return errors > 0;
+	}
+
+	/**
+	 * @return the test end time in milliseconds since Epoch
+	 */
+	public long getEndTime() {
+		return startTime + testTime;
+	}
+}
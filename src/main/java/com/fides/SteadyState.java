@@ -0,0 +1,157 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Find the part of a run whose samples are measured, excluding the warm-up and the cool-down.
+ */
+public final class SteadyState {
+
+	// bytes read at the beginning and at the end of a data log for its first and last samples
+	private static final int SCAN_SIZE = 64 * 1024;
+
+	// largest relative difference between the smoothed and the median throughput of the steady state
+	private static final double TOLERANCE = 0.1;
+
+	// smallest number of windows of a timeline to detect its steady state
+	private static final int MIN_WINDOWS = 5;
+
+	private SteadyState() {
+	}
+
+	/**
+	 * Read the first and the last samples of the data logs. Uncompressed data logs are only read at
+	 * their beginning and at their end, compressed data logs are read whole.
+	 *
+	 * @param dataLogs the data logs of the run
+	 *
+	 * @return the earliest start time and the latest end time of the run, or null if there is no sample
+	 *
+	 * @throws IOException
+	 */
+	public static long[] getRunRange(final List<File> dataLogs) throws IOException {
+		final long[] range = { Long.MAX_VALUE, Long.MIN_VALUE };
+		final Sample sample = new Sample();
+		for (final File dataLog : dataLogs) {
+			final DataLogReader head = new DataLogReader(DataLogMerger.open(dataLog));
+			try {
+				// the lines are written when the tests end, the earliest start is near the beginning
+				while ((LogFiles.isCompressed(dataLog) || head.getPosition() < SCAN_SIZE) && head.next(sample)) {
+					range[0] = Math.min(range[0], sample.getStartTime());
+					range[1] = Math.max(range[1], sample.getEndTime());
+				}
+			} finally {
+				head.close();
+			}
+			if (!LogFiles.isCompressed(dataLog)) {
+				readTail(dataLog, head.getParser(), sample, range);
+			}
+		}
+		return range[0] <= range[1] ? range : null;
+	}
+
+	/**
+	 * Read the latest end time of the last lines of a data log.
+	 */
+	private static void readTail(final File dataLog, final DataLogParser parser, final Sample sample,
+			final long[] range) throws IOException {
+		final byte[] tail;
+		final RandomAccessFile file = new RandomAccessFile(dataLog, "r");
+		try {
+			final long end = file.length();
+			final long start = Math.max(0, end - SCAN_SIZE);
+			tail = new byte[(int) (end - start)];
+			file.seek(start);
+			file.readFully(tail);
+		} finally {
+			file.close();
+		}
+
+		// skip the first line, which may be partial
+		int first = 0;
+		while (first < tail.length && tail[first] != '\n') {
+			first++;
+		}
+		final DataLogReader reader = new DataLogReader(
+				new ByteArrayInputStream(tail, first, tail.length - first), parser, 0);
+		while (reader.next(sample)) {
+			range[1] = Math.max(range[1], sample.getEndTime());
+		}
+	}
+
+	/**
+	 * Detect the steady state of a run as the windows between the first and the last one where the
+	 * smoothed throughput is close to the median throughput of the run.
+	 *
+	 * @param timeline the timeline of the whole run, closed
+	 *
+	 * @return the start time of the first window and the end time of the last window of the steady
+	 * 	state, or null if it cannot be detected
+	 */
+	public static long[] detect(final Timeline timeline) {
+		final Timeline.Series total = timeline.getTotal();
+		final int size = total.size();
+		if (size < MIN_WINDOWS) {
+			return null;
+		}
+
+		final double[] throughput = new double[size];
+		for (int i = 0; i < size; i++) {
+			throughput[i] = total.getTests(i) + total.getErrors(i);
+		}
+		final double[] sorted = throughput.clone();
+		Arrays.sort(sorted);
+		final double median = sorted[size / 2];
+		if (median == 0) {
+			return null;
+		}
+
+		// smooth over a twentieth of the run so that a single slow window does not end the warm-up
+		final int smoothing = Math.max(3, size / 20);
+		int first = -1;
+		for (int i = 0; i + smoothing <= size && first < 0; i++) {
+			if (Math.abs(average(throughput, i, i + smoothing) - median) <= TOLERANCE * median) {
+				first = i;
+			}
+		}
+		int last = -1;
+		for (int i = size; i - smoothing >= 0 && last < 0; i--) {
+			if (Math.abs(average(throughput, i - smoothing, i) - median) <= TOLERANCE * median) {
+				last = i - 1;
+			}
+		}
+		if (first < 0 || last < first) {
+			return null;
+		}
+
+		final long width = timeline.getWindowWidth();
+		return new long[] { total.getStartTime(first, width), total.getStartTime(last, width) + width };
+	}
+
+	private static double average(final double[] values, final int from, final int to) {
+		double sum = 0;
+		for (int i = from; i < to; i++) {
+			sum += values[i];
+		}
+		return sum / (to - from);
+	}
+}
@@ -0,0 +1,360 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Write the statistics of a run as JSON and CSV for dashboards and trend jobs.
+ *
+ * The files are streamed from the aggregated statistics, one test or one window at a time,
+ * and replace the previous files at once when complete.
+ */
+public class SummaryWriter {
+
+	// JSON summary file name
+	public static final String JSON_FILE_NAME = "summary.json";
+
+	// CSV file name of the statistics per test
+	public static final String TESTS_CSV_FILE_NAME = "tests.csv";
+
+	// CSV file name of the statistics per timeline window
+	public static final String TIMELINE_CSV_FILE_NAME = "timeline.csv";
+
+	// percentiles of the test times written for every test
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+	// the descriptions of the tests
+	private final TestIndex tests;
+
+	// exact percentiles of the run, or null
+	private ExactStatistics exactStatistics = null;
+
+	// test time histograms corrected for coordinated omission, or null
+	private OmissionCorrection omissionCorrection = null;
+
+	/**
+	 * @param tests the descriptions of the tests
+	 */
+	public SummaryWriter(final TestIndex tests) {
+		this.tests = tests;
+	}
+
+	/**
+	 * @param exactStatistics the finished exact statistics of the run, or null
+	 */
+	public void setExactStatistics(final ExactStatistics exactStatistics) {
+		this.exactStatistics = exactStatistics;
+	}
+
+	/**
+	 * @param omissionCorrection the corrected histograms of the run, or null
+	 */
+	public void setOmissionCorrection(final OmissionCorrection omissionCorrection) {
+		this.omissionCorrection = omissionCorrection;
+	}
+
+	/**
+	 * Write the statistics per test and per timeline window as JSON.
+	 *
+	 * @param directory the report directory
+	 * @param statistics the statistics of the run
+	 * @param timeline the timeline of the run, or null
+	 *
+	 * @return the JSON file
+	 *
+	 * @throws IOException
+	 */
+	public File writeJson(final File directory, final RunStatistics statistics, final Timeline timeline)
+			throws IOException {
+		final File file = new File(directory, JSON_FILE_NAME);
+		final PrintWriter out = open(file);
+		try {
+			out.print('{');
+			writeStatistics(out, statistics);
+			if (timeline != null) {
+				out.print(",\"timeline\":{\"window\":" + timeline.getWindowWidth() + ",\"total\":");
+				writeSeries(out, timeline.getTotal(), timeline.getWindowWidth());
+				out.print(",\"tests\":[");
+				boolean first = true;
+				for (final Map.Entry<Integer, Timeline.Series> entry : timeline.getTests().entrySet()) {
+					out.print((first ? "" : ",") + "{\"test\":" + entry.getKey() + ",\"windows\":");
+					writeSeries(out, entry.getValue(), timeline.getWindowWidth());
+					out.print('}');
+					first = false;
+				}
+				out.print("]}");
+			}
+			out.println('}');
+		} finally {
+			out.close();
+		}
+		return close(out, file);
+	}
+
+	/**
+	 * Write the cumulative and last interval statistics of a run in progress as JSON.
+	 *
+	 * @param file the JSON file
+	 * @param cumulative the statistics of the run so far
+	 * @param lastInterval the statistics of the last interval
+	 *
+	 * @throws IOException
+	 */
+	public void writeLiveJson(final File file, final RunStatistics cumulative, final RunStatistics lastInterval)
+			throws IOException {
+		final PrintWriter out = open(file);
+		try {
+			out.print("{\"updated\":" + System.currentTimeMillis() + ",\"cumulative\":{");
+			writeStatistics(out, cumulative);
+			out.print("},\"lastInterval\":{");
+			writeStatistics(out, lastInterval);
+			out.println("}}");
+		} finally {
+			out.close();
+		}
+		close(out, file);
+	}
+
+	/**
+	 * Write the statistics per test as CSV, the totals last.
+	 *
+	 * @param directory the report directory
+	 * @param statistics the statistics of the run
+	 *
+	 * @return the CSV file
+	 *
+	 * @throws IOException
+	 */
+	public File writeTestsCsv(final File directory, final RunStatistics statistics) throws IOException {
+		final File file = new File(directory, TESTS_CSV_FILE_NAME);
+		final PrintWriter out = open(file);
+		try {
+			out.print("Test,Description,Tests,Errors,Mean,StdDev,Min");
+			for (final double percentile : PERCENTILES) {
+				out.print(",P" + formatPercentile(percentile));
+			}
+			out.println(",Max,TPS");
+			for (final Map.Entry<Integer, TestStatistics> entry : statistics.getTests().entrySet()) {
+				writeCsvRow(out, entry.getKey().toString(), tests.getDescription(entry.getKey()),
+						statistics, entry.getValue());
+			}
+			writeCsvRow(out, "Total", null, statistics, statistics.getTotal());
+		} finally {
+			out.close();
+		}
+		return close(out, file);
+	}
+
+	/**
+	 * Write the statistics per timeline window as CSV, the totals first.
+	 *
+	 * @param directory the report directory
+	 * @param timeline the timeline of the run
+	 *
+	 * @return the CSV file
+	 *
+	 * @throws IOException
+	 */
+	public File writeTimelineCsv(final File directory, final Timeline timeline) throws IOException {
+		final File file = new File(directory, TIMELINE_CSV_FILE_NAME);
+		final PrintWriter out = open(file);
+		try {
+			out.print("Test,Start,Tests,Errors,Mean,Max");
+			for (final double percentile : Timeline.PERCENTILES) {
+				out.print(",P" + formatPercentile(percentile));
+			}
+			out.println();
+			writeCsvSeries(out, "Total", timeline.getTotal(), timeline.getWindowWidth());
+			for (final Map.Entry<Integer, Timeline.Series> entry : timeline.getTests().entrySet()) {
+				writeCsvSeries(out, entry.getKey().toString(), entry.getValue(), timeline.getWindowWidth());
+			}
+		} finally {
+			out.close();
+		}
+		return close(out, file);
+	}
+
+	private void writeStatistics(final PrintWriter out, final RunStatistics statistics) {
+		out.print("\"start\":" + statistics.getFirstStartTime());
+		out.print(",\"end\":" + statistics.getLastEndTime());
+		out.print(",\"duration\":" + statistics.getDuration());
+		out.print(",\"total\":{");
+		writeTest(out, statistics, statistics.getTotal(), exactStatistics != null ? exactStatistics.getTotal() : null,
+				omissionCorrection != null ? omissionCorrection.getTotal() : null);
+		out.print("},\"tests\":[");
+		boolean first = true;
+		for (final Map.Entry<Integer, TestStatistics> entry : statistics.getTests().entrySet()) {
+			final String description = tests.getDescription(entry.getKey());
+			out.print((first ? "" : ",") + "{\"test\":" + entry.getKey());
+			if (description != null) {
+				out.print(",\"description\":\"" + escape(description) + "\"");
+			}
+			out.print(',');
+			writeTest(out, statistics, entry.getValue(),
+					exactStatistics != null ? exactStatistics.getTests().get(entry.getKey()) : null,
+					omissionCorrection != null ? omissionCorrection.getTests().get(entry.getKey()) : null);
+			out.print('}');
+			first = false;
+		}
+		out.print(']');
+	}
+
+	private void writeTest(final PrintWriter out, final RunStatistics run, final TestStatistics test,
+			final long[] exact, final LatencyHistogram corrected) {
+		out.print("\"tests\":" + test.getTests());
+		out.print(",\"errors\":" + test.getErrors());
+		out.print(",\"mean\":" + format(test.getMeanTime()));
+		out.print(",\"stdDev\":" + format(test.getStandardDeviation()));
+		out.print(",\"min\":" + test.getMinimumTime());
+		for (final double percentile : PERCENTILES) {
+			out.print(",\"p" + formatPercentile(percentile) + "\":" + test.getPercentileTime(percentile));
+		}
+		out.print(",\"max\":" + test.getMaximumTime());
+		out.print(",\"tps\":" + format(run.getTestsPerSecond(test)));
+		if (exact != null) {
+			out.print(",\"exact\":{");
+			for (int p = 0; p < ExactStatistics.PERCENTILES.length; p++) {
+				out.print((p == 0 ? "" : ",") + "\"p" + formatPercentile(ExactStatistics.PERCENTILES[p]) + "\":" + exact[p]);
+			}
+			out.print('}');
+		}
+		if (corrected != null) {
+			out.print(",\"corrected\":{");
+			for (int p = 0; p < PERCENTILES.length; p++) {
+				out.print((p == 0 ? "" : ",") + "\"p" + formatPercentile(PERCENTILES[p]) + "\":"
+						+ corrected.getValueAtPercentile(PERCENTILES[p]));
+			}
+			out.print('}');
+		}
+	}
+
+	private static void writeSeries(final PrintWriter out, final Timeline.Series series, final long windowWidth) {
+		out.print('[');
+		boolean first = true;
+		for (int i = 0; i < series.size(); i++) {
+			if (series.getTests(i) == 0 && series.getErrors(i) == 0) {
+				continue;
+			}
+			out.print((first ? "" : ",") + "{\"start\":" + series.getStartTime(i, windowWidth));
+			out.print(",\"tests\":" + series.getTests(i));
+			out.print(",\"errors\":" + series.getErrors(i));
+			out.print(",\"mean\":" + format(series.getMeanTime(i)));
+			out.print(",\"max\":" + series.getMaximumTime(i));
+			for (int p = 0; p < Timeline.PERCENTILES.length; p++) {
+				out.print(",\"p" + formatPercentile(Timeline.PERCENTILES[p]) + "\":" + series.getPercentileTime(p, i));
+			}
+			out.print('}');
+			first = false;
+		}
+		out.print(']');
+	}
+
+	private static void writeCsvRow(final PrintWriter out, final String test, final String description,
+			final RunStatistics run, final TestStatistics statistics) {
+		out.print(test + "," + csv(description));
+		out.print("," + statistics.getTests());
+		out.print("," + statistics.getErrors());
+		out.print("," + format(statistics.getMeanTime()));
+		out.print("," + format(statistics.getStandardDeviation()));
+		out.print("," + statistics.getMinimumTime());
+		for (final double percentile : PERCENTILES) {
+			out.print("," + statistics.getPercentileTime(percentile));
+		}
+		out.print("," + statistics.getMaximumTime());
+		out.println("," + format(run.getTestsPerSecond(statistics)));
+	}
+
+	private static void writeCsvSeries(final PrintWriter out, final String test, final Timeline.Series series,
+			final long windowWidth) {
+		for (int i = 0; i < series.size(); i++) {
+			if (series.getTests(i) == 0 && series.getErrors(i) == 0) {
+				continue;
+			}
+			out.print(test + "," + series.getStartTime(i, windowWidth));
+			out.print("," + series.getTests(i));
+			out.print("," + series.getErrors(i));
+			out.print("," + format(series.getMeanTime(i)));
+			out.print("," + series.getMaximumTime(i));
+			for (int p = 0; p < Timeline.PERCENTILES.length; p++) {
+				out.print("," + series.getPercentileTime(p, i));
+			}
+			out.println();
+		}
+	}
+
+	/**
+	 * Open a temporary file next to the file to write.
+	 */
+	private static PrintWriter open(final File file) throws IOException {
+		final File directory = file.getParentFile();
+		if (directory != null && !directory.exists()) {
+			directory.mkdirs();
+		}
+		return new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(new File(file.getPath() + ".tmp")), "UTF-8")));
+	}
+
+	/**
+	 * Replace the file by the temporary file once written.
+	 */
+	private static File close(final PrintWriter out, final File file) throws IOException {
+		if (out.checkError()) {
+			throw new IOException("Unable to write " + file.getPath());
+		}
+		FileUtil.replace(new File(file.getPath() + ".tmp"), file);
+		return file;
+	}
+
+	private static String formatPercentile(final double percentile) {
+		return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+	}
+
+	private static String format(final double value) {
+		return Double.isNaN(value) || Double.isInfinite(value) ? "0" : String.format(Locale.ENGLISH, "%.2f", value);
+	}
+
+	private static String csv(final String value) {
+		if (value == null) {
+			return "";
+		}
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+
+	private static String escape(final String value) {
+		final StringBuilder escaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				escaped.append('\\').append(c);
+			} else if (c < 0x20) {
+				escaped.append(String.format("\\u%04x", (int) c));
+			} else {
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+}
@@ -0,0 +1,67 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the tests of a run by test number, read once from the mapping logs and shared by
+ * every report stage: the descriptions are looked up by int test number, without boxing.
+ */
+public final class TestIndex {
+
+	private final IntMap<String> descriptions;
+
+	private TestIndex(final IntMap<String> descriptions) {
+		this.descriptions = descriptions;
+	}
+
+	/**
+	 * @param mappingLogs the mapping logs of the run; a test described by several logs keeps
+	 * 	the description of the last one
+	 *
+	 * @return the index of the tests
+	 *
+	 * @throws IOException
+	 */
+	public static TestIndex read(final List<File> mappingLogs) throws IOException {
+		final IntMap<String> index = new IntMap<String>();
+		for (final File mappingLog : mappingLogs) {
+			for (final Map.Entry<Integer, String> entry : MappingLog.readTestDescriptions(mappingLog).entrySet()) {
+				index.put(entry.getKey(), entry.getValue());
+			}
+		}
+		return new TestIndex(index);
+	}
+
+	/**
+	 * @param test a test number
+	 *
+	 * @return the description of the test, or null if it has none
+	 */
+	public String getDescription(final int test) {
+		return descriptions.get(test);
+	}
+
+	/**
+	 * @return the number of tests described
+	 */
+	public int size() {
+		return descriptions.size();
+	}
+}
@@ -0,0 +1,177 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+
+package com.fides;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Aggregate the samples of one test in constant memory.
+ *
+ * As in the Grinder console, the test time statistics only include the tests
+ * that completed without errors.
+ */
+public class TestStatistics {
+
+	// number of successful tests
+	private long tests = 0;
+
+	// number of tests with errors
+	private long errors = 0;
+
+	// sum of the successful test times
+	private long totalTime = 0;
+
+	// sum of the squared successful test times
+	private double totalTimeSquared = 0;
+
+	private long minimumTime = Long.MAX_VALUE;
+
+	private long maximumTime = Long.MIN_VALUE;
+
+	// distribution of the successful test times
+	private LatencyHistogram histogram = new LatencyHistogram();
+
+	/**
+	 * Add a sample to the statistics.
+	 *
+	 * @param sample the sample to add
+	 */
+	public void record(final Sample sample) {
+		if (sample.isError()) {
+			errors++;
+			return;
+		}
+
+		final long time = sample.getTestTime();
+		tests++;
+		totalTime += time;
+		totalTimeSquared += (double) time * time;
+		if (time < minimumTime) {
+			minimumTime = time;
+		}
+		if (time > maximumTime) {
+			maximumTime = time;
+		}
+		histogram.recordValue(time);
+	}
+
+	/**
+	 * Add the statistics of another set of samples of the same test.
+	 *
+	 * @param other the statistics to add
+	 */
+	public void add(final TestStatistics other) {
+		tests += other.tests;
+		errors += other.errors;
+		totalTime += other.totalTime;
+		totalTimeSquared += other.totalTimeSquared;
+		minimumTime = Math.min(minimumTime, other.minimumTime);
+		maximumTime = Math.max(maximumTime, other.maximumTime);
+		histogram.add(other.histogram);
+	}
+
+	public long getTests() {
+		return tests;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	public long getTotalTime() {
+		return totalTime;
+	}
+
+	/**
+	 * @return the mean successful test time in milliseconds
+	 */
+	public double getMeanTime() {
+		return tests == 0 ? 0 : (double) totalTime / tests;
+	}
+
+	/**
+	 * @return the standard deviation of the successful test times in milliseconds
+	 */
+	public double getStandardDeviation() {
+		if (tests == 0) {
+			return 0;
+		}
+		final double mean = getMeanTime();
+		return Math.sqrt(Math.max(0, totalTimeSquared / tests - mean * mean));
+	}
+
+	public long getMinimumTime() {
+		return tests == 0 ? 0 : minimumTime;
+	}
+
+	public long getMaximumTime() {
+		return tests == 0 ? 0 : maximumTime;
+	}
+
+	/**
+	 * @return the distribution of the successful test times
+	 */
+	public LatencyHistogram getHistogram() {
+		return histogram;
+	}
+
+	/**
+	 * @param percentile the percentile, between 0 and 100
+	 *
+	 * @return the successful test time at the percentile in milliseconds
+	 */
+	public long getPercentileTime(final double percentile) {
+		return histogram.getValueAtPercentile(percentile);
+	}
+
+	/**
+	 * @param out the output
+	 *
+	 * @throws IOException
+	 */
+	public void writeTo(final DataOutput out) throws IOException {
+		out.writeLong(tests);
+		out.writeLong(errors);
+		out.writeLong(totalTime);
+		out.writeDouble(totalTimeSquared);
+		out.writeLong(minimumTime);
+		out.writeLong(maximumTime);
+		histogram.writeTo(out);
+	}
+
+	/**
+	 * Read statistics written by {@link #writeTo(DataOutput)}.
+	 *
+	 * @param in the input
+	 *
+	 * @return the statistics
+	 *
+	 * @throws IOException
+	 */
+	public static TestStatistics readFrom(final DataInput in) throws IOException {
+		final TestStatistics statistics = new TestStatistics();
+		statistics.tests = in.readLong();
+		statistics.errors = in.readLong();
+		statistics.totalTime = in.readLong();
+		statistics.totalTimeSquared = in.readDouble();
+		statistics.minimumTime = in.readLong();
+		statistics.maximumTime = in.readLong();
+		statistics.histogram = LatencyHistogram.readFrom(in);
+		return statistics;
+	}
+}
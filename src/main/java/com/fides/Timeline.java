@@ -0,0 +1,626 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+
+package com.fides;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregate the samples of a run in fixed time windows, per test and in total:
+ * tests, errors, mean, maximum and percentile test times of every window.
+ *
+ * Windows are aligned on the Epoch so that timelines of different parts of a
+ * run can be added. Every window keeps a sparse histogram of its test times,
+ * with the buckets of {@link LatencyHistogram}, so the windows of different
+ * parts are merged bucket by bucket and their percentiles are those of all the
+ * samples of the window, whatever the order the samples arrive in.
+ */
+public class Timeline implements SampleListener {
+
+	// percentiles of the test times computed for every window
+	public static final double[] PERCENTILES = { 50, 90, 99 };
+
+	// bucket layout of the window histograms
+	private static final LatencyHistogram LAYOUT = new LatencyHistogram();
+
+	// upper bound of the number of windows of a series, against bogus timestamps
+	private static final int MAX_WINDOWS = 10000000;
+
+	// identify the serialized form of a timeline
+	private static final int ENCODING_COOKIE = 0x474C5402;
+
+	// window width in milliseconds
+	private final long windowWidth;
+
+	// series per test number
+	private final Map<Integer, Series> tests = new TreeMap<Integer, Series>();
+
+	// the same series looked up for every sample without boxing the test number
+	private final IntMap<Series> index = new IntMap<Series>();
+
+	// series of all the tests
+	private Series total = new Series();
+
+	/**
+	 * @param windowWidth the window width in milliseconds
+	 */
+	public Timeline(final long windowWidth) {
+		if (windowWidth <= 0) {
+			throw new IllegalArgumentException("Timeline window width must be positive");
+		}
+		this.windowWidth = windowWidth;
+	}
+
+	/**
+	 * @param duration a duration in milliseconds, or followed by one of the units ms, s, m or h
+	 *
+	 * @return the duration in milliseconds
+	 */
+	public static long parseDuration(final String duration) {
+		final String value = duration.trim().toLowerCase(Locale.ENGLISH);
+		try {
+			if (value.endsWith("ms")) {
+				return Long.parseLong(value.substring(0, value.length() - 2).trim());
+			} else if (value.endsWith("s")) {
+				return Long.parseLong(value.substring(0, value.length() - 1).trim()) * 1000;
+			} else if (value.endsWith("m")) {
+				return Long.parseLong(value.substring(0, value.length() - 1).trim()) * 60000;
+			} else if (value.endsWith("h")) {
+				return Long.parseLong(value.substring(0, value.length() - 1).trim()) * 3600000;
+			}
+			return Long.parseLong(value);
+		} catch (final NumberFormatException e) {
+			throw new ConfigurePluginException("Invalid duration: " + duration);
+		}
+	}
+
+	public long getWindowWidth() {
+		return windowWidth;
+	}
+
+	/**
+	 * @return a new empty timeline with the same window width
+	 */
+	public Timeline createPart() {
+		return new Timeline(windowWidth);
+	}
+
+	@Override
+	public void sample(final Sample sample) {
+		final long window = sample.getStartTime() / windowWidth;
+		getSeries(sample.getTest()).record(window, sample);
+		total.record(window, sample);
+	}
+
+	private Series getSeries(final int test) {
+		Series series = index.get(test);
+		if (series == null) {
+			series = new Series();
+			tests.put(test, series);
+			index.put(test, series);
+		}
+		return series;
+	}
+
+	/**
+	 * Release the memory reserved for more test times, once all the samples have been read.
+	 */
+	public void close() {
+		for (final Series series : tests.values()) {
+			series.close();
+		}
+		total.close();
+	}
+
+	/**
+	 * Add the windows of another part of the run.
+	 *
+	 * @param other the timeline to add
+	 */
+	public void add(final Timeline other) {
+		if (other.windowWidth != windowWidth) {
+			throw new IllegalArgumentException("Timelines have different window widths");
+		}
+		for (final Map.Entry<Integer, Series> entry : other.tests.entrySet()) {
+			getSeries(entry.getKey()).add(entry.getValue());
+		}
+		total.add(other.total);
+	}
+
+	/**
+	 * @return the series per test number, ordered by test number
+	 */
+	public Map<Integer, Series> getTests() {
+		return tests;
+	}
+
+	public Series getTotal() {
+		return total;
+	}
+
+	/**
+	 * @param out the output
+	 *
+	 * @throws IOException
+	 */
+	public void writeTo(final DataOutput out) throws IOException {
+		out.writeInt(ENCODING_COOKIE);
+		out.writeLong(windowWidth);
+		total.writeTo(out);
+		out.writeInt(tests.size());
+		for (final Map.Entry<Integer, Series> entry : tests.entrySet()) {
+			out.writeInt(entry.getKey());
+			entry.getValue().writeTo(out);
+		}
+	}
+
+	/**
+	 * Read a timeline written by {@link #writeTo(DataOutput)}.
+	 *
+	 * @param in the input
+	 *
+	 * @return the timeline
+	 *
+	 * @throws IOException
+	 */
+	public static Timeline readFrom(final DataInput in) throws IOException {
+		if (in.readInt() != ENCODING_COOKIE) {
+			throw new IOException("Not a serialized timeline.");
+		}
+		final Timeline timeline = new Timeline(in.readLong());
+		timeline.total = Series.readFrom(in);
+		final int tests = in.readInt();
+		for (int i = 0; i < tests; i++) {
+			final int test = in.readInt();
+			final Series series = Series.readFrom(in);
+			timeline.tests.put(test, series);
+			timeline.index.put(test, series);
+		}
+		return timeline;
+	}
+
+	/**
+	 * Select at most {@code maxPoints} windows of a series that keep its shape, by
+	 * Largest-Triangle-Three-Buckets or by keeping the lowest and highest value of
+	 * every group of windows.
+	 *
+	 * @param values the value of every window
+	 * @param maxPoints the maximum number of windows selected
+	 * @param minMax true to select the extremes of every group, false to use LTTB
+	 *
+	 * @return the indexes of the windows selected, in increasing order
+	 */
+	public static int[] downsample(final double[] values, final int maxPoints, final boolean minMax) {
+		final int n = values.length;
+		if (maxPoints <= 0 || n <= maxPoints || maxPoints < 3) {
+			final int[] all = new int[n];
+			for (int i = 0; i < n; i++) {
+				all[i] = i;
+			}
+			return all;
+		}
+		return minMax ? minMax(values, maxPoints) : largestTriangleThreeBuckets(values, maxPoints);
+	}
+
+	private static int[] largestTriangleThreeBuckets(final double[] values, final int maxPoints) {
+		final int n = values.length;
+		final int[] selected = new int[maxPoints];
+		final double every = (double) (n - 2) / (maxPoints - 2);
+
+		int a = 0;
+		selected[0] = 0;
+		for (int i = 0; i < maxPoints - 2; i++) {
+			// average point of the next group
+			final int averageStart = (int) Math.floor((i + 1) * every) + 1;
+			final int averageEnd = Math.min((int) Math.floor((i + 2) * every) + 1, n);
+			double averageX = 0;
+			double averageY = 0;
+			for (int j = averageStart; j < averageEnd; j++) {
+				averageX += j;
+				averageY += values[j];
+			}
+			final int averageLength = Math.max(1, averageEnd - averageStart);
+			averageX /= averageLength;
+			averageY /= averageLength;
+
+			// point of the current group forming the largest triangle
+			final int rangeStart = (int) Math.floor(i * every) + 1;
+			final int rangeEnd = (int) Math.floor((i + 1) * every) + 1;
+			double maxArea = -1;
+			int next = rangeStart;
+			for (int j = rangeStart; j < rangeEnd; j++) {
+				final double area = Math.abs((a - averageX) * (values[j] - values[a])
+						- (a - j) * (averageY - values[a]));
+				if (area > maxArea) {
+					maxArea = area;
+					next = j;
+				}
+			}
+			selected[i + 1] = next;
+			a = next;
+		}
+		selected[maxPoints - 1] = n - 1;
+		return selected;
+	}
+
+	private static int[] minMax(final double[] values, final int maxPoints) {
+		final int n = values.length;
+		final int groups = maxPoints / 2;
+		final List<Integer> selected = new ArrayList<Integer>(maxPoints);
+		for (int g = 0; g < groups; g++) {
+			final int start = (int) ((long) g * n / groups);
+			final int end = (int) ((long) (g + 1) * n / groups);
+			int min = start;
+			int max = start;
+			for (int j = start; j < end; j++) {
+				if (values[j] < values[min]) {
+					min = j;
+				}
+				if (values[j] > values[max]) {
+					max = j;
+				}
+			}
+			selected.add(Math.min(min, max));
+			if (min != max) {
+				selected.add(Math.max(min, max));
+			}
+		}
+
+		final int[] indexes = new int[selected.size()];
+		for (int i = 0; i < indexes.length; i++) {
+			indexes[i] = selected.get(i);
+		}
+		return indexes;
+	}
+
+	/**
+	 * The windows of one test, or of all the tests.
+	 */
+	public static final class Series {
+
+		// index of the first window since the Epoch, valid if size > 0
+		private long firstWindow;
+
+		// number of windows
+		private int size = 0;
+
+		private long[] tests = new long[0];
+
+		private long[] errors = new long[0];
+
+		private long[] totalTimes = new long[0];
+
+		private long[] maximumTimes = new long[0];
+
+		// histograms of the successful test times, null for a window without any
+		private WindowHistogram[] histograms = new WindowHistogram[0];
+
+		private Series() {
+		}
+
+		private void record(final long window, final Sample sample) {
+			if (!ensureWindow(window)) {
+				return;
+			}
+
+			final int i = (int) (window - firstWindow);
+			if (sample.isError()) {
+				errors[i]++;
+				return;
+			}
+
+			final long time = sample.getTestTime();
+			tests[i]++;
+			totalTimes[i] += time;
+			if (time > maximumTimes[i]) {
+				maximumTimes[i] = time;
+			}
+			if (histograms[i] == null) {
+				histograms[i] = new WindowHistogram();
+			}
+			histograms[i].record(LAYOUT.getBucketIndex(time), 1);
+		}
+
+		private void close() {
+			for (int i = 0; i < size; i++) {
+				if (histograms[i] != null) {
+					histograms[i].trim();
+				}
+			}
+		}
+
+		/**
+		 * Make sure the arrays cover the window.
+		 *
+		 * @return false if the window is too far from the others to be recorded
+		 */
+		private boolean ensureWindow(final long window) {
+			if (size == 0) {
+				firstWindow = window;
+				resize(0, 64);
+				size = 1;
+				return true;
+			}
+
+			final long last = Math.max(firstWindow + size - 1, window);
+			final long first = Math.min(firstWindow, window);
+			if (last - first >= MAX_WINDOWS) {
+				return false;
+			}
+
+			if (window < firstWindow) {
+				final int shift = (int) (firstWindow - window);
+				resize(shift, Math.max(tests.length, size + shift) + shift);
+				firstWindow = window;
+				size += shift;
+			} else if (window >= firstWindow + size) {
+				final int newSize = (int) (window - firstWindow + 1);
+				if (newSize > tests.length) {
+					resize(0, Math.max(newSize, tests.length * 2));
+				}
+				size = newSize;
+			}
+			return true;
+		}
+
+		/**
+		 * Reallocate the arrays, moving the windows by shift positions.
+		 */
+		private void resize(final int shift, final int capacity) {
+			tests = copy(tests, shift, capacity);
+			errors = copy(errors, shift, capacity);
+			totalTimes = copy(totalTimes, shift, capacity);
+			maximumTimes = copy(maximumTimes, shift, capacity);
+			final WindowHistogram[] copy = new WindowHistogram[capacity];
+			System.arraycopy(histograms, 0, copy, shift, Math.min(size, histograms.length));
+			histograms = copy;
+		}
+
+		private long[] copy(final long[] values, final int shift, final int capacity) {
+			final long[] copy = new long[capacity];
+			System.arraycopy(values, 0, copy, shift, Math.min(size, values.length));
+			return copy;
+		}
+
+		private void add(final Series other) {
+			if (other.size == 0) {
+				return;
+			}
+			if (!ensureWindow(other.firstWindow) || !ensureWindow(other.firstWindow + other.size - 1)) {
+				return;
+			}
+
+			final int offset = (int) (other.firstWindow - firstWindow);
+			for (int i = 0; i < other.size; i++) {
+				tests[offset + i] += other.tests[i];
+				errors[offset + i] += other.errors[i];
+				totalTimes[offset + i] += other.totalTimes[i];
+				maximumTimes[offset + i] = Math.max(maximumTimes[offset + i], other.maximumTimes[i]);
+				if (other.histograms[i] != null) {
+					if (histograms[offset + i] == null) {
+						histograms[offset + i] = new WindowHistogram();
+					}
+					histograms[offset + i].add(other.histograms[i]);
+				}
+			}
+		}
+
+		/**
+		 * @return the number of windows, from the first to the last window with samples
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * @param window the window index, from 0 to size - 1
+		 * @param windowWidth the window width in milliseconds
+		 *
+		 * @return the start time of the window in milliseconds since Epoch
+		 */
+		public long getStartTime(final int window, final long windowWidth) {
+			return (firstWindow + window) * windowWidth;
+		}
+
+		public long getTests(final int window) {
+			return tests[window];
+		}
+
+		public long getErrors(final int window) {
+			return errors[window];
+		}
+
+		public double getMeanTime(final int window) {
+			return tests[window] == 0 ? 0 : (double) totalTimes[window] / tests[window];
+		}
+
+		public long getMaximumTime(final int window) {
+			return maximumTimes[window];
+		}
+
+		/**
+		 * @param percentile the index of the percentile in {@link Timeline#PERCENTILES}
+		 * @param window the window index
+		 *
+		 * @return the percentile test time of the window
+		 */
+		public long getPercentileTime(final int percentile, final int window) {
+			final WindowHistogram histogram = histograms[window];
+			return histogram == null ? 0 : histogram.getValueAtPercentile(PERCENTILES[percentile], maximumTimes[window]);
+		}
+
+		private void writeTo(final DataOutput out) throws IOException {
+			out.writeLong(firstWindow);
+			out.writeInt(size);
+			for (int i = 0; i < size; i++) {
+				out.writeLong(tests[i]);
+				out.writeLong(errors[i]);
+				out.writeLong(totalTimes[i]);
+				out.writeLong(maximumTimes[i]);
+				if (histograms[i] == null) {
+					out.writeInt(0);
+				} else {
+					histograms[i].writeTo(out);
+				}
+			}
+		}
+
+		private static Series readFrom(final DataInput in) throws IOException {
+			final Series series = new Series();
+			final long firstWindow = in.readLong();
+			final int size = in.readInt();
+			if (size < 0 || size > MAX_WINDOWS) {
+				throw new IOException("Corrupted timeline.");
+			}
+			series.firstWindow = firstWindow;
+			series.resize(0, size);
+			series.size = size;
+			for (int i = 0; i < size; i++) {
+				series.tests[i] = in.readLong();
+				series.errors[i] = in.readLong();
+				series.totalTimes[i] = in.readLong();
+				series.maximumTimes[i] = in.readLong();
+				series.histograms[i] = WindowHistogram.readFrom(in);
+			}
+			return series;
+		}
+	}
+
+	/**
+	 * Sparse histogram of the test times of a window: the counts of the non empty buckets of
+	 * the {@link LatencyHistogram} layout, ordered by bucket.
+	 */
+	private static final class WindowHistogram {
+
+		private int[] buckets = new int[4];
+
+		private long[] counts = new long[4];
+
+		private int size = 0;
+
+		private long totalCount = 0;
+
+		private void record(final int bucket, final long count) {
+			int i = Arrays.binarySearch(buckets, 0, size, bucket);
+			if (i < 0) {
+				i = -i - 1;
+				if (size == buckets.length) {
+					buckets = Arrays.copyOf(buckets, size * 2);
+					counts = Arrays.copyOf(counts, size * 2);
+				}
+				System.arraycopy(buckets, i, buckets, i + 1, size - i);
+				System.arraycopy(counts, i, counts, i + 1, size - i);
+				buckets[i] = bucket;
+				counts[i] = 0;
+				size++;
+			}
+			counts[i] += count;
+			totalCount += count;
+		}
+
+		private void add(final WindowHistogram other) {
+			final int[] mergedBuckets = new int[size + other.size];
+			final long[] mergedCounts = new long[size + other.size];
+			int i = 0;
+			int j = 0;
+			int n = 0;
+			while (i < size || j < other.size) {
+				if (j == other.size || (i < size && buckets[i] < other.buckets[j])) {
+					mergedBuckets[n] = buckets[i];
+					mergedCounts[n++] = counts[i++];
+				} else if (i == size || other.buckets[j] < buckets[i]) {
+					mergedBuckets[n] = other.buckets[j];
+					mergedCounts[n++] = other.counts[j++];
+				} else {
+					mergedBuckets[n] = buckets[i];
+					mergedCounts[n++] = counts[i++] + other.counts[j++];
+				}
+			}
+			buckets = mergedBuckets;
+			counts = mergedCounts;
+			size = n;
+			totalCount += other.totalCount;
+		}
+
+		private void trim() {
+			if (size < buckets.length) {
+				buckets = Arrays.copyOf(buckets, size);
+				counts = Arrays.copyOf(counts, size);
+			}
+		}
+
+		/**
+		 * @param percentile the percentile, between 0 and 100
+		 * @param maximum the highest test time of the window
+		 *
+		 * @return the highest test time equivalent to the percentile, within the histogram precision
+		 */
+		private long getValueAtPercentile(final double percentile, final long maximum) {
+			final double p = Math.min(Math.max(percentile, 0), 100);
+			final long countAtPercentile = Math.max(1, (long) Math.ceil(p / 100 * totalCount));
+			long total = 0;
+			for (int i = 0; i < size; i++) {
+				total += counts[i];
+				if (total == totalCount) {
+					// the last bucket also counts the values above the highest trackable value
+					return maximum;
+				}
+				if (total >= countAtPercentile) {
+					return Math.min(LAYOUT.getBucketValue(buckets[i]), maximum);
+				}
+			}
+			return maximum;
+		}
+
+		private void writeTo(final DataOutput out) throws IOException {
+			out.writeInt(size);
+			for (int i = 0; i < size; i++) {
+				out.writeInt(buckets[i]);
+				out.writeLong(counts[i]);
+			}
+		}
+
+		/**
+		 * @return the histogram, or null if it has no bucket
+		 */
+		private static WindowHistogram readFrom(final DataInput in) throws IOException {
+			final int size = in.readInt();
+			if (size < 0 || size > 1 << 20) {
+				throw new IOException("Corrupted timeline.");
+			}
+			if (size == 0) {
+				return null;
+			}
+			final WindowHistogram histogram = new WindowHistogram();
+			histogram.buckets = new int[size];
+			histogram.counts = new long[size];
+			for (int i = 0; i < size; i++) {
+				histogram.buckets[i] = in.readInt();
+				histogram.counts[i] = in.readLong();
+				histogram.totalCount += histogram.counts[i];
+			}
+			histogram.size = size;
+			return histogram;
+		}
+	}
+}
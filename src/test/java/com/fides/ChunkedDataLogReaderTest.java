@@ -0,0 +1,195 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * Parsing data logs in chunks on several threads gives the statistics of parsing them one
+ * after the other.
+ */
+public class ChunkedDataLogReaderTest extends TestCase {
+
+	// header of the data logs, as written by Grinder 3.11 with HTTP statistics
+	private static final String DATA_LOG_HEADER = "Thread, Run, Test, Start time (ms since Epoch), Test time, "
+			+ "Errors, HTTP response code, HTTP response length, HTTP response errors, Time to resolve host, "
+			+ "Time to establish connection, Time to first byte, New connections";
+
+	private File directory;
+
+	@Override
+	protected void setUp() throws IOException {
+		directory = File.createTempFile("chunked", "");
+		assertTrue(directory.delete() && directory.mkdirs());
+	}
+
+	@Override
+	protected void tearDown() {
+		FileUtil.delete(directory);
+	}
+
+	public void testChunksEqualSequentialParsing() throws IOException {
+		final List<File> dataLogs = new ArrayList<File>();
+		for (int i = 0; i < 3; i++) {
+			final File dataLog = new File(directory, "data_host-" + i + ".log");
+			writeDataLog(dataLog, 5000 + 1000 * i, i, false);
+			dataLogs.add(dataLog);
+		}
+
+		final ReportAggregator chunked = new ReportAggregator(dataLogs.size());
+		new ChunkedDataLogReader(dataLogs, 4, 4096).read(chunked);
+
+		assertSameStatistics(readSequentially(dataLogs), chunked);
+	}
+
+	public void testCompressedAndPlainDataLogs() throws IOException {
+		final List<File> dataLogs = new ArrayList<File>();
+		final File compressed = new File(directory, "data_host-0.log" + LogFiles.GZIP_SUFFIX);
+		writeDataLog(compressed, 4000, 10, true);
+		dataLogs.add(compressed);
+		final File plain = new File(directory, "data_host-1.log");
+		writeDataLog(plain, 4000, 11, false);
+		dataLogs.add(plain);
+
+		final ReportAggregator chunked = new ReportAggregator(dataLogs.size());
+		new ChunkedDataLogReader(dataLogs, 3, 1000).read(chunked);
+
+		assertSameStatistics(readSequentially(dataLogs), chunked);
+	}
+
+	public void testLastLineWithoutTerminator() throws IOException {
+		final File dataLog = new File(directory, "data_host-0.log");
+		final PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(dataLog), "ISO-8859-1"));
+		try {
+			out.println(DATA_LOG_HEADER);
+			out.println("0, 0, 1, 1350000000000, 12, 0, 200, 5120, 0, 0, 1, 6, 0");
+			out.print("1, 0, 2, 1350000000005, 30, 0, 200, 5120, 0, 0, 1, 15, 0");
+		} finally {
+			out.close();
+		}
+		final List<File> dataLogs = new ArrayList<File>();
+		dataLogs.add(dataLog);
+
+		final ReportAggregator chunked = new ReportAggregator(1);
+		new ChunkedDataLogReader(dataLogs, 2, 16).read(chunked);
+
+		assertEquals(2, chunked.getStatistics().getTotal().getTests());
+		assertSameStatistics(readSequentially(dataLogs), chunked);
+	}
+
+	private static ReportAggregator readSequentially(final List<File> dataLogs) throws IOException {
+		final ReportAggregator aggregator = new ReportAggregator(dataLogs.size());
+		for (int i = 0; i < dataLogs.size(); i++) {
+			final int process = i;
+			final DataLogReader reader = new DataLogReader(LogFiles.open(dataLogs.get(i)));
+			try {
+				reader.readAll(new SampleListener() {
+
+					@Override
+					public void sample(final Sample sample) {
+						sample.setProcess(process);
+						aggregator.sample(sample);
+					}
+				});
+			} finally {
+				reader.close();
+			}
+		}
+		return aggregator;
+	}
+
+	private static void assertSameStatistics(final ReportAggregator expected, final ReportAggregator actual) {
+		assertSameStatistics(expected.getStatistics(), actual.getStatistics());
+		for (int i = 0; i < expected.getProcessCount(); i++) {
+			assertSameStatistics(expected.getProcessStatistics(i), actual.getProcessStatistics(i));
+		}
+	}
+
+	private static void assertSameStatistics(final RunStatistics expected, final RunStatistics actual) {
+		assertEquals(expected.getFirstStartTime(), actual.getFirstStartTime());
+		assertEquals(expected.getLastEndTime(), actual.getLastEndTime());
+		assertEquals(expected.getTests().keySet(), actual.getTests().keySet());
+		for (final Map.Entry<Integer, TestStatistics> entry : expected.getTests().entrySet()) {
+			assertSameStatistics(entry.getValue(), actual.getTests().get(entry.getKey()));
+		}
+		assertSameStatistics(expected.getTotal(), actual.getTotal());
+	}
+
+	private static void assertSameStatistics(final TestStatistics expected, final TestStatistics actual) {
+		assertEquals(expected.getTests(), actual.getTests());
+		assertEquals(expected.getErrors(), actual.getErrors());
+		assertEquals(expected.getTotalTime(), actual.getTotalTime());
+		assertEquals(expected.getMinimumTime(), actual.getMinimumTime());
+		assertEquals(expected.getMaximumTime(), actual.getMaximumTime());
+		assertEquals(expected.getMeanTime(), actual.getMeanTime(), 1e-9);
+		// the sums of squares are added in another order
+		assertEquals(expected.getStandardDeviation(), actual.getStandardDeviation(), 1e-6);
+		for (final double percentile : ExactStatistics.PERCENTILES) {
+			assertEquals(expected.getPercentileTime(percentile), actual.getPercentileTime(percentile));
+		}
+	}
+
+	/**
+	 * Write a data log of worker threads running tests with log-normal test times and 1% errors.
+	 */
+	private static void writeDataLog(final File file, final int lines, final long seed, final boolean compressed)
+			throws IOException {
+		final Random random = new Random(seed);
+		OutputStream stream = new FileOutputStream(file);
+		if (compressed) {
+			stream = new GZIPOutputStream(stream);
+		}
+		final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(stream, "ISO-8859-1")));
+		try {
+			out.println(DATA_LOG_HEADER);
+			long time = 1350000000000L;
+			for (int i = 0; i < lines; i++) {
+				final int test = 1 + random.nextInt(5);
+				final long testTime = (long) Math.exp(3 + random.nextGaussian() * 0.8);
+				final boolean error = random.nextInt(100) == 0;
+				time += random.nextInt(3);
+				out.print(i % 50);
+				out.print(", ");
+				out.print(i / 50);
+				out.print(", ");
+				out.print(test);
+				out.print(", ");
+				out.print(time);
+				out.print(", ");
+				out.print(testTime);
+				out.print(error ? ", 1, 500, 0, 1" : ", 0, 200, 5120, 0");
+				out.println(", 0, 1, " + testTime / 2 + ", 0");
+			}
+		} finally {
+			out.close();
+		}
+		if (out.checkError()) {
+			throw new IOException("Unable to write " + file.getPath());
+		}
+	}
+}
@@ -0,0 +1,72 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.lang.reflect.Field;
+
+import junit.framework.TestCase;
+
+import org.codehaus.classworlds.ClassRealm;
+import org.codehaus.classworlds.ClassWorld;
+import org.codehaus.plexus.component.configurator.BasicComponentConfigurator;
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+import org.codehaus.plexus.configuration.xml.XmlPlexusConfiguration;
+
+/**
+ * Parameters of the compare goal, set by the component configurator Maven uses for mojos.
+ */
+public class CompareTest extends TestCase {
+
+	public void testStatisticalTestParameter() throws Exception {
+		final Compare compare = new Compare();
+		configure(compare, parameter("statisticalTest", BaselineComparison.Z_TEST));
+
+		assertEquals(BaselineComparison.Z_TEST, getField(Compare.class, compare, "statisticalTest"));
+		// not mistaken for the test script of the parent mojo
+		assertNull(getField(GrinderPropertiesConfigure.class, compare, "test"));
+	}
+
+	public void testThresholdsParameter() throws Exception {
+		final Compare compare = new Compare();
+		final XmlPlexusConfiguration thresholds = new XmlPlexusConfiguration("thresholds");
+		thresholds.addChild(parameter(BaselineComparison.SIGNIFICANCE, "0.01"));
+		configure(compare, thresholds);
+
+		assertEquals("{" + BaselineComparison.SIGNIFICANCE + "=0.01}",
+				String.valueOf(getField(Compare.class, compare, "thresholds")));
+	}
+
+	private static PlexusConfiguration parameter(final String name, final String value) {
+		final XmlPlexusConfiguration parameter = new XmlPlexusConfiguration(name);
+		parameter.setValue(value);
+		return parameter;
+	}
+
+	/**
+	 * Configure a mojo with a parameter of its plugin configuration.
+	 */
+	private static void configure(final Object mojo, final PlexusConfiguration parameter) throws Exception {
+		final XmlPlexusConfiguration configuration = new XmlPlexusConfiguration("configuration");
+		configuration.addChild(parameter);
+		final ClassRealm realm = new ClassWorld().newRealm("plugin", CompareTest.class.getClassLoader());
+		new BasicComponentConfigurator().configureComponent(mojo, configuration, realm);
+	}
+
+	private static Object getField(final Class<?> type, final Object mojo, final String name) throws Exception {
+		final Field field = type.getDeclaredField(name);
+		field.setAccessible(true);
+		return field.get(mojo);
+	}
+}
@@ -0,0 +1,157 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+/**
+ * Percentiles of ExactStatistics, spilled to run files and merged in several passes, checked
+ * against the sorted test times.
+ */
+public class ExactStatisticsTest extends TestCase {
+
+	// the smallest buffer, and a fan-in of 2 forcing merge passes
+	private static final long SMALL_MEMORY_BUDGET = 8 * 1024;
+
+	private File directory;
+
+	@Override
+	protected void setUp() throws IOException {
+		directory = File.createTempFile("exact", "");
+		assertTrue(directory.delete() && directory.mkdirs());
+	}
+
+	@Override
+	protected void tearDown() {
+		FileUtil.delete(directory);
+	}
+
+	public void testWithoutSpill() throws IOException {
+		assertExactStatistics(64L * 1024 * 1024, 1, 5000);
+	}
+
+	public void testSpillAndMergePasses() throws IOException {
+		assertExactStatistics(SMALL_MEMORY_BUDGET, 1, 20000);
+	}
+
+	public void testSpillAndMergeOfParts() throws IOException {
+		assertExactStatistics(SMALL_MEMORY_BUDGET, 4, 20000);
+	}
+
+	public void testNoSuccessfulTest() throws IOException {
+		final ExactStatistics statistics = new ExactStatistics(directory, SMALL_MEMORY_BUDGET, 1, 0);
+		final Sample sample = new Sample();
+		sample.setTest(1);
+		sample.setTestTime(10);
+		sample.setErrors(1);
+		statistics.sample(sample);
+		statistics.finish();
+
+		assertEquals(0, statistics.getCount(1));
+		assertTrue(statistics.getTests().isEmpty());
+		assertNull(statistics.getTotal());
+	}
+
+	public void testParseSize() {
+		assertEquals(512, ExactStatistics.parseSize("512"));
+		assertEquals(64 * 1024, ExactStatistics.parseSize("64k"));
+		assertEquals(256L * 1024 * 1024, ExactStatistics.parseSize(" 256M "));
+		assertEquals(2L * 1024 * 1024 * 1024, ExactStatistics.parseSize("2g"));
+		try {
+			ExactStatistics.parseSize("lots");
+			fail("invalid size accepted");
+		} catch (final ConfigurePluginException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Aggregate random samples into parts sharing the memory budget, as concurrent readers do,
+	 * and compare the result with the nearest rank percentiles of the sorted test times.
+	 */
+	private void assertExactStatistics(final long memoryBudget, final int parts, final int samples) throws IOException {
+		final Random random = new Random(samples + parts);
+		final ExactStatistics statistics = new ExactStatistics(directory, memoryBudget, parts, 10);
+		final List<ExactStatistics> partList = new ArrayList<ExactStatistics>();
+		for (int i = 0; i < parts; i++) {
+			partList.add(statistics.createPart());
+		}
+
+		final Map<Integer, List<Long>> times = new TreeMap<Integer, List<Long>>();
+		final List<Long> allTimes = new ArrayList<Long>();
+		final Sample sample = new Sample();
+		for (int i = 0; i < samples; i++) {
+			sample.setTest(1 + random.nextInt(7));
+			sample.setStartTime(1350000000000L + i);
+			sample.setTestTime((long) Math.exp(3 + random.nextGaussian()));
+			sample.setErrors(random.nextInt(50) == 0 ? 1 : 0);
+			partList.get(i % parts).sample(sample);
+
+			if (!sample.isError()) {
+				List<Long> testTimes = times.get(sample.getTest());
+				if (testTimes == null) {
+					testTimes = new ArrayList<Long>();
+					times.put(sample.getTest(), testTimes);
+				}
+				testTimes.add(sample.getTestTime());
+				allTimes.add(sample.getTestTime());
+			}
+		}
+
+		for (final ExactStatistics part : partList) {
+			statistics.add(part);
+		}
+		statistics.finish();
+
+		assertEquals(times.keySet(), statistics.getTests().keySet());
+		for (final Map.Entry<Integer, List<Long>> entry : times.entrySet()) {
+			assertEquals(entry.getValue().size(), statistics.getCount(entry.getKey()));
+			assertPercentiles("test " + entry.getKey(), entry.getValue(), statistics.getTests().get(entry.getKey()));
+		}
+		assertPercentiles("total", allTimes, statistics.getTotal());
+
+		final List<Sample> slowest = statistics.getSlowest();
+		assertEquals(10, slowest.size());
+		Collections.sort(allTimes);
+		assertEquals(allTimes.get(allTimes.size() - 1).longValue(), slowest.get(0).getTestTime());
+		for (int i = 1; i < slowest.size(); i++) {
+			assertTrue(slowest.get(i - 1).getTestTime() >= slowest.get(i).getTestTime());
+		}
+
+		final String[] left = directory.list();
+		assertTrue("run files left", left == null || left.length == 0);
+	}
+
+	private static void assertPercentiles(final String name, final List<Long> times, final long[] actual) {
+		final List<Long> sorted = new ArrayList<Long>(times);
+		Collections.sort(sorted);
+		assertEquals(ExactStatistics.PERCENTILES.length + 1, actual.length);
+		for (int p = 0; p < ExactStatistics.PERCENTILES.length; p++) {
+			final int rank = (int) Math.max(1, Math.ceil(ExactStatistics.PERCENTILES[p] / 100 * sorted.size())) - 1;
+			assertEquals(name + " percentile " + ExactStatistics.PERCENTILES[p],
+					sorted.get(rank).longValue(), actual[p]);
+		}
+		assertEquals(name + " maximum", sorted.get(sorted.size() - 1).longValue(), actual[ExactStatistics.PERCENTILES.length]);
+	}
+}
@@ -0,0 +1,180 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Percentiles and merges of LatencyHistogram, checked against the sorted values.
+ */
+public class LatencyHistogramTest extends TestCase {
+
+	private static final double[] PERCENTILES = { 0, 1, 25, 50, 90, 95, 99, 99.9, 100 };
+
+	public void testEmptyHistogram() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getTotalCount());
+		assertEquals(0, histogram.getMinValue());
+		assertEquals(0, histogram.getMaxValue());
+		assertEquals(0, histogram.getValueAtPercentile(50));
+	}
+
+	public void testSmallValuesAreExact() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (long value = 1; value <= 100; value++) {
+			histogram.recordValue(value);
+		}
+		assertEquals(100, histogram.getTotalCount());
+		assertEquals(1, histogram.getMinValue());
+		assertEquals(100, histogram.getMaxValue());
+		assertEquals(50, histogram.getValueAtPercentile(50));
+		assertEquals(95, histogram.getValueAtPercentile(95));
+		assertEquals(100, histogram.getValueAtPercentile(100));
+	}
+
+	public void testPercentilesWithinPrecision() {
+		final long[] values = randomValues(new Random(1), 100000);
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (final long value : values) {
+			histogram.recordValue(value);
+		}
+		assertPercentiles(values, histogram);
+	}
+
+	public void testValuesAboveHighestTrackableValue() {
+		final LatencyHistogram histogram = new LatencyHistogram(2, 1000);
+		histogram.recordValue(10);
+		histogram.recordValue(5000);
+		assertEquals(5000, histogram.getMaxValue());
+		assertEquals(5000, histogram.getValueAtPercentile(100));
+		assertEquals(10, histogram.getValueAtPercentile(50));
+	}
+
+	public void testNegativeValuesAreRecordedAsZero() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		histogram.recordValue(-5);
+		assertEquals(1, histogram.getTotalCount());
+		assertEquals(0, histogram.getValueAtPercentile(100));
+	}
+
+	public void testMergeEqualsSingleHistogram() {
+		final long[] values = randomValues(new Random(2), 50000);
+		final LatencyHistogram single = new LatencyHistogram();
+		final LatencyHistogram[] parts = new LatencyHistogram[4];
+		for (int i = 0; i < parts.length; i++) {
+			parts[i] = new LatencyHistogram();
+		}
+		for (int i = 0; i < values.length; i++) {
+			single.recordValue(values[i]);
+			parts[i % parts.length].recordValue(values[i]);
+		}
+
+		final LatencyHistogram merged = new LatencyHistogram();
+		for (final LatencyHistogram part : parts) {
+			merged.add(part);
+		}
+		merged.add(new LatencyHistogram());
+
+		assertSameHistogram(single, merged);
+		assertPercentiles(values, merged);
+	}
+
+	public void testMergeOfDifferentLayouts() {
+		final long[] values = randomValues(new Random(3), 20000);
+		final LatencyHistogram coarse = new LatencyHistogram(1, 100000);
+		final LatencyHistogram merged = new LatencyHistogram();
+		for (final long value : values) {
+			coarse.recordValue(value);
+		}
+		merged.add(coarse);
+
+		assertEquals(coarse.getTotalCount(), merged.getTotalCount());
+		assertEquals(coarse.getMinValue(), merged.getMinValue());
+		assertEquals(coarse.getMaxValue(), merged.getMaxValue());
+		for (final double percentile : PERCENTILES) {
+			final long expected = coarse.getValueAtPercentile(percentile);
+			final long actual = merged.getValueAtPercentile(percentile);
+			// the values of the coarse buckets are within 10% of each other
+			assertTrue("percentile " + percentile + ": " + actual + " != " + expected,
+					Math.abs(actual - expected) <= Math.max(1, expected / 10));
+		}
+	}
+
+	public void testSerializedForm() throws IOException {
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for (final long value : randomValues(new Random(4), 10000)) {
+			histogram.recordValue(value);
+		}
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		histogram.writeTo(out);
+		out.close();
+		final LatencyHistogram read = LatencyHistogram.readFrom(
+				new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertSameHistogram(histogram, read);
+	}
+
+	/**
+	 * @return log-normal test times, around 20 ms with a long tail
+	 */
+	private static long[] randomValues(final Random random, final int count) {
+		final long[] values = new long[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = (long) Math.exp(3 + random.nextGaussian() * 1.2);
+		}
+		return values;
+	}
+
+	/**
+	 * Check the percentiles of the histogram against the nearest rank percentiles of the values.
+	 */
+	private static void assertPercentiles(final long[] values, final LatencyHistogram histogram) {
+		final long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		assertEquals(sorted.length, histogram.getTotalCount());
+		assertEquals(sorted[0], histogram.getMinValue());
+		assertEquals(sorted[sorted.length - 1], histogram.getMaxValue());
+
+		for (final double percentile : PERCENTILES) {
+			final int rank = (int) Math.max(1, Math.ceil(percentile / 100 * sorted.length)) - 1;
+			final long expected = sorted[rank];
+			final long actual = histogram.getValueAtPercentile(percentile);
+			// 2 significant digits: the highest equivalent value is at most 1% above
+			assertTrue("percentile " + percentile + ": " + actual + " < " + expected, actual >= expected);
+			assertTrue("percentile " + percentile + ": " + actual + " > " + expected,
+					actual <= expected + Math.max(1, expected / 100));
+		}
+	}
+
+	private static void assertSameHistogram(final LatencyHistogram expected, final LatencyHistogram actual) {
+		assertEquals(expected.getTotalCount(), actual.getTotalCount());
+		assertEquals(expected.getMinValue(), actual.getMinValue());
+		assertEquals(expected.getMaxValue(), actual.getMaxValue());
+		for (double percentile = 0; percentile <= 100; percentile += 0.5) {
+			assertEquals("percentile " + percentile, expected.getValueAtPercentile(percentile),
+					actual.getValueAtPercentile(percentile));
+		}
+	}
+}
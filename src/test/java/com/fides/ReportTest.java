@@ -0,0 +1,79 @@
+//   Copyright 2012 Giuseppe Iacono, Felipe Munoz Castillo
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//       http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+
+package com.fides;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Log files of a run found by the report.
+ */
+public class ReportTest extends TestCase {
+
+	private File directory;
+
+	@Override
+	protected void setUp() throws IOException {
+		directory = File.createTempFile("report", "");
+		assertTrue(directory.delete() && directory.mkdirs());
+	}
+
+	@Override
+	protected void tearDown() {
+		FileUtil.delete(directory);
+	}
+
+	public void testLogKeptUncompressedAndCompressedIsReadOnce() throws IOException {
+		final File agent = new File(directory, RunHistory.AGENT_DIRECTORY_PREFIX + 0);
+		assertTrue(agent.mkdirs());
+		for (final String name : new String[] { "host-0-data.log", "host-0-data.log.gz", "host-1-data.log.gz",
+				"host-1-data.log.zst", "host-0.log", "host-0.log.gz" }) {
+			assertTrue(new File(directory, name).createNewFile());
+		}
+		assertTrue(new File(agent, "host-0-data.log.gz").createNewFile());
+
+		final Report report = new Report() {
+
+			@Override
+			public File getRunLogDirectory() {
+				return directory;
+			}
+		};
+
+		assertEquals(names("host-0-data.log", "host-1-data.log.gz", "host-0-data.log.gz"),
+				names(report.getLogFiles(Report.DATA_LOG_FILE_REGEX)));
+		assertEquals(names("host-0.log"), names(report.getLogFiles(Report.MAPPING_LOG_FILE_REGEX)));
+	}
+
+	private static List<String> names(final String... names) {
+		final List<String> list = new ArrayList<String>();
+		for (final String name : names) {
+			list.add(name);
+		}
+		return list;
+	}
+
+	private static List<String> names(final List<File> files) {
+		final List<String> list = new ArrayList<String>();
+		for (final File file : files) {
+			list.add(file.getName());
+		}
+		return list;
+	}
+}